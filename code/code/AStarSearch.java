@@ -21,274 +21,303 @@ public class AStarSearch {
 	 *  heuristic estimate. I.e. Not only shortest edge weight but also lowest
 	 *  distance estimate from node to goal.
 	 *
-	 * @return List<Segment> path - shortest path from start to end*/
+	 *  Runs on the Graph's CsrGraph, see distSearch.
+	 *
+	 * @return List<Segment> path - shortest path from end back to start, empty if there is none*/
 	public List<Segment> searchDist(){
 
+		CsrGraph csr = graph.getCsr();
+		int goal = csr.index(destination);
+		return toSegments(csr, arcPath(csr, distSearch(csr, csr.index(origin), goal), goal));
+	}
+
+	/**Finds the path that takes the least amount of time,
+	 * Uses a Time heuristic estimate - calculated via
+	 * finding shortest distance. Ensures that the algo
+	 * is admissible (underestimates the totalCost)
+	 *
+	 *@return List<Segment> - fastest path from end back to start, empty if there is none
+	 * */
+	public List<Segment> searchPathTime(){
+
+		CsrGraph csr = graph.getCsr();
+		int goal = csr.index(destination);
+		return toSegments(csr, arcPath(csr, timeSearch(csr, csr.index(origin), goal), goal));
+	}
+
+	/**Like searchDist or searchPathTime, but over the Graph's TurnGraph, so turn
+	 * restrictions can't hide a route and time includes the turn costs
+	 *
+	 * @return List<Segment> - path from end back to start, empty if there is none*/
+	public List<Segment> searchTurns(boolean byTime){
+
+		CsrGraph csr = graph.getCsr();
+		TurnGraph tg = graph.getTurnGraph();
+		int start = csr.index(origin), goal = csr.index(destination);
+		return toSegments(csr, turnPath(tg, turnSearch(tg, start, goal, byTime), start, goal));
+	}
+
+	/**Like searchDist or searchPathTime, but searching from both ends at once, see BidirectionalSearch
+	 *
+	 * @return List<Segment> - path from end back to start, empty if there is none*/
+	public List<Segment> searchBidirectional(boolean byTime){
+
+		CsrGraph csr = graph.getCsr();
+		return toSegments(csr, new BidirectionalSearch(csr, byTime).search(csr.index(origin), csr.index(destination)));
+	}
+
+	/**Shortest distance A* between two dense node indices of any RoutingGraph.
+	 * The fringe holds node indices and the relaxation loop only reads arcs, the
+	 * search state is in this thread's SearchWorkspace so searches can run at
+	 * the same time.
+	 *
+	 * @return SearchWorkspace - the state of the finished search, see arcPath*/
+	public static SearchWorkspace distSearch(RoutingGraph g, int start, int goal) {
+
+		SearchWorkspace ws = SearchWorkspace.forThread(g.nodeCount());		//Nothing to reset, see SearchWorkspace
 		PriorityQueue<FringeNode> fringe = new PriorityQueue<FringeNode>();
-		List<Segment> path = new ArrayList<Segment>();
-		
-		//Initialize all Nodes: Visited-False, PathFrom-Null
-		for(Node n : graph.nodes.values()){
-			n.setVisited(false);
-			n.setPathFrom(null);
-		}
-		for(Segment s : graph.segments)
-			s.setPathDistance(0);
 
 		//Enqueue Start Node
-		fringe.offer(new FringeNode(origin, null, 0, calcDistHeuristic(origin, destination)));
+		ws.reach(start, 0, -1);
+		fringe.offer(new FringeNode(start, -1, -1, 0, g.distanceBound(start, goal)));
 
 		while (!fringe.isEmpty()) {
 
 			FringeNode fn = fringe.poll(); 			//Poll the most promising Node - based of lowest heuristic estimate
-			Node node = fn.getNode();
+			int node = fn.getNode();
 
-			//displayInfo(fn, calcDistHeuristic(origin, destination));
+			if (ws.isSettled(node))					//Already reached by a shorter path
+				continue;
+			ws.settle(node);
+			ws.reach(node, fn.getCostToHere(), fn.getArc());
 
-			if(fn.getParent()!=null){				//Exception: Initial Start Node
-
-				Segment seg = graph.getSegmentFromPoints(fn.getParent(), fn.getNode());
-				path.add(seg);
+			if (node == goal)						//END CONDITION - Reached Goal
+				break;
 
-			}
-			if (!node.isVisited()) {				//Initialize if not visited - mark as visited, set pathFrom and cost
-				node.setVisited(true);
-				node.setPathFrom(fn.getParent());
-				node.setCost(fn.getCostToHere());
-			}
+			int arrived = fn.getArc();
 
-			if (node.equals(destination))			//END CONDITION - Reached Goal
-				break;
+			for (int a = g.begin(node), end = g.end(node); a < end; a++) {		//Add Neighbors to Fringe
 
-			Node to = null;
-			for (Segment s : node.getOutNeighbours()) { 		//Add Neighbors to Fringe
-
-
-				//Exception: Check if valid one-way
-				if(s.road.oneWay == 1){		//1 = Oneway, 0 not
-					//System.out.println("ONE WAY FOUND! @ "+s.road.roadID+ "	N1: "+s.start.nodeID+ "	N2: "+s.end.nodeID);
-					if(s.start.nodeID == node.nodeID)				//Ensure that to = end of segment
-						to = s.end;
-					else											//If segment doesnt conform to one-way rule, then discard
-						continue;
-				}
-				else if(s.road.oneWay == 0){
-					if(node.nodeID == s.start.nodeID)
-						to = s.end;
-					else if(node.nodeID != s.start.nodeID)			//Exception: Ensure that 'to' Node is not the same as 'from' Node
-						to = s.start;
-				}
-
-				if(path.size() > 0 && isRestricted(path.get(path.size()-1), s, node))	//If this segment is restricted then consider others
+				int to = g.target(a);
+				if (ws.isSettled(to))
+					continue;
+				if (arrived >= 0 && g.isTurnRestricted(arrived, a))				//If this turn is restricted then consider others
 					continue;
 
-				if (!to.isVisited()) {
-					//Check if this path is admissible and consistent					//SPECIAL CASE: DEAD END/BACKTRACK
-					double costToNeigh = fn.getCostToHere() + s.length;					//Calculate Cost to here + edge weight from here to neighbor
-					double estTotal = costToNeigh + calcDistHeuristic(to, destination);		//Calculate total estimate with heuristic
+				double costToNeigh = fn.getCostToHere() + g.length(a);			//Calculate Cost to here + edge weight from here to neighbor
+				if (costToNeigh >= ws.cost(to))
+					continue;														//Already queued with a cheaper cost
+				ws.reach(to, costToNeigh, a);
+				double estTotal = costToNeigh + g.distanceBound(to, goal);		//Calculate total estimate with heuristic
 
-					FringeNode f = new FringeNode(to, node, costToNeigh, estTotal);		//Should only add once, and add only the best path, ensure that we can reach our destination!!
-					fringe.offer(f);
-				}
+				fringe.offer(new FringeNode(to, node, a, costToNeigh, estTotal));
 			}
 		}
 
-		return trimPath(path);				//Ensures that only the shortest and reachable path is considered;
+		return ws;
 	}
 
-	/**Finds the path that takes the least amount of time,
-	 * Uses a Time heuristic estimate - calculated via
-	 * finding shortest distance. Ensures that the algo
-	 * is admissible (underestimates the totalCost)
+	/**Fastest path A* between two dense node indices of any RoutingGraph, see distSearch
 	 *
-	 *@return List<Segment> - fastest path from start to end
-	 * */
-	public List<Segment> searchPathTime(){
+	 * @return SearchWorkspace - the state of the finished search, see arcPath*/
+	public static SearchWorkspace timeSearch(RoutingGraph g, int start, int goal) {
 
-		List<Segment> timePath = new ArrayList<Segment>();
+		SearchWorkspace ws = SearchWorkspace.forThread(g.nodeCount());
 		PriorityQueue<FringeTimeNode> fringe = new PriorityQueue<FringeTimeNode>();
-		
-		//Initialize all Nodes: Visited-False, PathFrom-Null
-		for(Node n : graph.nodes.values()){
-			n.setVisited(false);
-			n.setPathFrom(null);
-		}
 
 		//Enqueue Start Node
-		fringe.offer(new FringeTimeNode(origin, null, 0, calcTimeHeuristic(origin, destination)));
+		ws.reach(start, 0, -1);
+		fringe.offer(new FringeTimeNode(start, -1, -1, 0, timeHeuristic(g, start, goal)));
 
 		while(!fringe.isEmpty()){
 
 			FringeTimeNode fn = fringe.poll();
-			Node node = fn.getNode();
-
-			//displayTimeInfo(fn, totalEstTime);
-
+			int node = fn.getNode();
 
-			if(fn.getParent()!=null){
-				Segment seg = graph.getSegmentFromPoints(fn.getParent(), node);
-				timePath.add(seg);
-			}
+			if(ws.isSettled(node))
+				continue;
+			ws.settle(node);
+			ws.reach(node, fn.getTimeCostToHere(), fn.getArc());
 
-			if(!node.isVisited()){
-				node.setVisited(true);
-				node.setPathFrom(fn.getParent());
-				node.setCost(fn.getTimeCostToHere());
-			}
-			if(node == destination)
+			if(node == goal)
 				break;
 
-			Node to = null;
-			for(Segment s : node.getOutNeighbours()){
-
-				//======================RESTRICTIONS===========================//
-				//Exception: Check if valid one-way
-				if(s.road.oneWay == 1){		//1 = Oneway, 0 not
-					//System.out.println("ONE WAY FOUND! @ "+s.road.roadID+ "	N1: "+s.start.nodeID+ "	N2: "+s.end.nodeID);
-					if(s.start.nodeID == node.nodeID)				//Ensure that to = end of segment
-						to = s.end;
-					else											//If segment doesnt conform to one-way rule, then discard
-						continue;
-				}
-				else if(s.road.oneWay == 0){
-					if(node.nodeID == s.start.nodeID)
-						to = s.end;
-					else if(node.nodeID != s.start.nodeID)			//Exception: Ensure that 'to' Node is not the same as 'from' Node
-						to = s.start;
-				}
-
-				if(timePath.size() > 0 && isRestricted(timePath.get(timePath.size()-1), s, node))	//If this segment is restricted then consider others
-					continue;
-				//======================RESTRICTIONS===========================//
-
+			int arrived = fn.getArc();
 
-				if(!to.isVisited()){
+			for(int a = g.begin(node), end = g.end(node); a < end; a++){
 
-					double costToNeigh = fn.getTimeCostToHere() + ((s.length/getRoadSpeed(s.road.speed)) * 3600) - s.road.roadClass;		//Reduce cost based on road class level
-					double estTotal = costToNeigh + calcTimeHeuristic(to, destination);
+				int to = g.target(a);
+				if(ws.isSettled(to))
+					continue;
+				if(arrived >= 0 && g.isTurnRestricted(arrived, a))
+					continue;
 
-					if(to.hasLights){		// || node.hasLights
-//						System.out.println("Traffic Light @ "+to.nodeID);
-						estTotal += 5;		//Add Extra Cost if To Node has lights - Reduce its priority, more expensive
-					}
+				double costToNeigh = fn.getTimeCostToHere() + g.time(a);
+				if(costToNeigh >= ws.cost(to))
+					continue;
+				ws.reach(to, costToNeigh, a);
+				double estTotal = costToNeigh + timeHeuristic(g, to, goal);		//Light delays are in the arc times, see LIGHT_DELAY
 
-					fringe.offer(new FringeTimeNode(to, node, costToNeigh, estTotal));
-				}
+				fringe.offer(new FringeTimeNode(to, node, a, costToNeigh, estTotal));
 			}
 		}
 
-		return trimPath(timePath);
+		return ws;
 	}
 
-
-	/**Calculates total Time heuristic estimate based on
-	 * shortest path considers speed limits and road class
+	/**A* over the arcs of a TurnGraph: a state is an arc, its cost is that of
+	 * reaching the arc's head, and moving on follows a transition (an allowed
+	 * turn). Starts from every arc leaving start and ends on settling the
+	 * first arc into goal. The heuristic of an arc is the distance bound from
+	 * its head, still consistent since a transition costs at least the arc.
 	 *
-	 * @retrun Time in seconds*/
-	public static double calcTimeHeuristic(Node start, Node end){
+	 * @return SearchWorkspace - the state of the finished search, by arc, see turnPath*/
+	public static SearchWorkspace turnSearch(TurnGraph tg, int start, int goal, boolean byTime) {
+
+		RoutingGraph g = tg.base();
+		SearchWorkspace ws = SearchWorkspace.forThread(g.arcCount());
+		PriorityQueue<FringeNode> fringe = new PriorityQueue<FringeNode>();		//Node fields hold arcs here
+		if (start == goal)
+			return ws;
+
+		for (int a = g.begin(start), end = g.end(start); a < end; a++) {
+			double cost = byTime ? g.time(a) : g.length(a);
+			if (cost >= ws.cost(a))
+				continue;
+			ws.reach(a, cost, -1);
+			fringe.offer(new FringeNode(a, -1, -1, cost, cost + estimate(g, g.target(a), goal, byTime)));
+		}
 
-		double time = 0;
+		while (!fringe.isEmpty()) {
 
-		double dist = calcDistHeuristic(start, end);
-		time = (dist / 150) * 3600;			//Divide by MAX SPEED
+			FringeNode fn = fringe.poll();
+			int arc = fn.getNode();
 
-		return time;
+			if (ws.isSettled(arc))
+				continue;
+			ws.settle(arc);
+			ws.reach(arc, fn.getCostToHere(), fn.getArc());
+
+			if (g.target(arc) == goal)				//First arc into the goal is the best one
+				break;
+
+			for (int t = tg.begin(arc), end = tg.end(arc); t < end; t++) {
+
+				int to = tg.turn(t);
+				if (ws.isSettled(to))
+					continue;
+
+				double costToNeigh = fn.getCostToHere() + (byTime ? g.time(to) + tg.delay(t) : g.length(to));
+				if (costToNeigh >= ws.cost(to))
+					continue;
+				ws.reach(to, costToNeigh, arc);
+				fringe.offer(new FringeNode(to, arc, arc, costToNeigh, costToNeigh + estimate(g, g.target(to), goal, byTime)));
+			}
+		}
+
+		return ws;
 	}
 
-	/**Returns the Euclidean distance between the current node and the end destination
+	/**Follows the predecessor arcs of a finished turnSearch back from the settled arc into the goal
 	 *
-	 * @param Node current, Node destination*/
-	public static double calcDistHeuristic(Node current, Node destination) {
+	 * @return int[] - arcs from the goal back to the start, null if the goal wasn't reached*/
+	public static int[] turnPath(TurnGraph tg, SearchWorkspace ws, int start, int goal) {
 
-		double distance = 0;
+		RoutingGraph g = tg.base();
+		if(start == goal)
+			return new int[0];
 
-		//Calculate Euclidean Distance
-		distance = Math.sqrt(Math.pow(current.location.x - destination.location.x, 2) +
-				Math.pow(current.location.y - destination.location.y, 2));
+		int last = -1;
+		for(int p = g.inBegin(goal), end = g.inEnd(goal); p < end && last < 0; p++){
+			if(ws.isSettled(g.inArc(p)))
+				last = g.inArc(p);
+		}
+		if(last < 0)
+			return null;
+
+		int count = 0;
+		for(int arc = last; arc >= 0; arc = ws.arc(arc))
+			count++;
+
+		int[] arcs = new int[count];
+		int i = 0;
+		for(int arc = last; arc >= 0; arc = ws.arc(arc))
+			arcs[i++] = arc;
+		return arcs;
+	}
 
-		return distance;
+	private static double estimate(RoutingGraph g, int from, int to, boolean byTime) {
+		return byTime ? timeHeuristic(g, from, to) : g.distanceBound(from, to);
 	}
 
+	/**Follows the arrival arcs of a finished search back from the goal
+	 *
+	 * @return int[] - arcs from the goal back to the start, null if the goal wasn't reached*/
+	public static int[] arcPath(RoutingGraph g, SearchWorkspace ws, int goal) {
 
-	/**Returns TRUE if the segment in question has restrictions applicable to it*/
-	public boolean isRestricted(Segment prevSeg, Segment curSeg, Node n){
+		if(!ws.isSettled(goal))							//Unreachable, e.g. only against a one-way road
+			return null;
 
-		boolean restrict = false;
-		Restriction rest = null;
+		int count = 0;
+		for(int node = goal; ws.arc(node) >= 0; node = g.source(ws.arc(node)))
+			count++;
 
-		Node N1 = null;
-		Node N2 = null;		//CASE: Each NODE has multiple restrictions!
+		int[] arcs = new int[count];
+		int i = 0;
+		for(int node = goal; ws.arc(node) >= 0; node = g.source(ws.arc(node)))
+			arcs[i++] = ws.arc(node);
+		return arcs;
+	}
 
-		if(prevSeg.start.nodeID != n.nodeID)
-			N1 = prevSeg.start;
-		else
-			N1 = prevSeg.end;
+	/**@return List<Segment> - the Segments of the arcs, empty for no path*/
+	private static List<Segment> toSegments(CsrGraph csr, int[] arcs) {
 
-		if(curSeg.end.nodeID != n.nodeID)
-			N2 = curSeg.end;
-		else
-			N2 = curSeg.start;
+		List<Segment> path = new ArrayList<Segment>();
+		if(arcs != null)
+			for(int a : arcs)
+				path.add(csr.segment(a));
+		return path;
+	}
 
-		if(n.getRestrictions().size() > 0){
+	private static double timeHeuristic(RoutingGraph g, int from, int to) {
+		return g.distanceBound(from, to) / 150 * 3600;			//Divide by MAX SPEED
+	}
 
-			for(Restriction r : n.getRestrictions()){
-				if(r.getN1().nodeID == N1.nodeID && r.getN2().nodeID == N2.nodeID && r.getN().nodeID == n.nodeID
-						&& prevSeg.road.roadID == r.getR1().roadID && curSeg.road.roadID == r.getR2().roadID){
+	/**Calculates total Time heuristic estimate: the straight line distance at
+	 * the top speed limit, a lower bound on the arc times (speed limit plus
+	 * LIGHT_DELAY) the time searches add up
+	 *
+	 * @retrun Time in seconds*/
+	public static double calcTimeHeuristic(Node start, Node end){
 
-					rest = r;				//Get the right Restriction
-				}
-			}
+		double time = 0;
 
-			if(rest != null){
-				if (rest.getN1().nodeID == N1.nodeID && rest.getN2().nodeID == N2.nodeID && rest.getN().nodeID == n.nodeID
-						&& rest.getR1().roadID == prevSeg.road.roadID && rest.getR2().roadID == curSeg.road.roadID ) {
-					restrict = true;
-					//System.out.println("RESTRICTION FOUND! ");
-					//System.out.println("N1: " + N1.nodeID + "	N: " + n.nodeID + "	N2: " + N2.nodeID + "\n");
-				}
-			}
-		}
+		double dist = calcDistHeuristic(start, end);
+		time = (dist / 150) * 3600;			//Divide by MAX SPEED
 
-		return restrict;
+		return time;
 	}
 
-
-	/**Ensures that the path to be highlighted excludes any incorrect routes/paths
+	/**Returns the Euclidean distance between the current node and the end destination,
+	 * read straight from the packed coordinates
 	 *
-	 * @return List<Segment> - path to be highlighted*/
-	public List<Segment> trimPath(List<Segment> path){
-
-
-		List<Segment> realPath = new ArrayList<Segment>();
-		
-		Node to = null;
-		realPath.add(path.get(path.size()-1));
-		if(path.get(path.size()-1).end == destination)
-			to = path.get(path.size()-1).start;
-		else
-			to = path.get(path.size()-1).end;
-		
-		
-		for(int i = path.size()-2 ; i >= 0; i--){
-			
-			if(path.get(i).start == to && path.get(i).end == to.getPathFrom()){			//Find Matching Segment
-				realPath.add(path.get(i));
-				to = path.get(i).end;
-			}
-			else if(path.get(i).end == to && path.get(i).start == to.getPathFrom()){
-				realPath.add(path.get(i));
-				to = path.get(i).start;
-			}
-		}
-		
-		return realPath;
+	 * @param Node current, Node destination*/
+	public static double calcDistHeuristic(Node current, Node destination) {
+
+		double[] xy = current.coords.nodeArray();
+		int a = 2 * current.index, b = 2 * destination.index;
+
+		//Calculate Euclidean Distance
+		double dx = xy[a] - xy[b], dy = xy[a + 1] - xy[b + 1];
+		return Math.sqrt(dx * dx + dy * dy);
 	}
 
 
 	private void displayInfo(FringeNode fn, double totalDist) {
 
-		Node from = fn.getParent();
-		Node to = fn.getNode();
+		CsrGraph csr = graph.getCsr();
+		Node from = fn.getParent() < 0 ? null : csr.node(fn.getParent());
+		Node to = csr.node(fn.getNode());
 		double cost = fn.getCostToHere();
 		double totalCostToGoal = fn.getTotalCostToGoal();
 
@@ -298,20 +327,21 @@ public class AStarSearch {
 		}
 		else if(from!=null){
 			System.out.println("Street Name: " + getRoadNameFromPoints(from, to) +
-					"	Distance to Goal: " + fn.getDistToGoal() + "	FROM: " + fn.getParent().nodeID + "	TO: " + to.nodeID + "	TotalDist: " + totalDist);
+					"	Distance to Goal: " + fn.getDistToGoal() + "	FROM: " + from.nodeID + "	TO: " + to.nodeID + "	TotalDist: " + totalDist);
 		}
 	}
 
 	private void displayTimeInfo(FringeTimeNode fn, double totalEstTime) {
 
-		Node from = fn.getParent();
-		Node to = fn.getNode();
+		CsrGraph csr = graph.getCsr();
+		Node from = fn.getParent() < 0 ? null : csr.node(fn.getParent());
+		Node to = csr.node(fn.getNode());
 
-		if(fn.getParent() == null)
+		if(from == null)
 			System.out.println(getRoadNameFromPoints(from, to) + "	TotalTime: " + totalEstTime);
 		else if(from!=null){
 			System.out.println("Street Name: " + getRoadNameFromPoints(from, to) +
-					"	Time to Goal: " + fn.getTotalTimeCostToGoal() + "	FROM: " + fn.getParent().nodeID + "	TO: " + to.nodeID + "	TotalTime: " + totalEstTime);
+					"	Time to Goal: " + fn.getTotalTimeCostToGoal() + "	FROM: " + from.nodeID + "	TO: " + to.nodeID + "	TotalTime: " + totalEstTime);
 		}
 
 	}
@@ -326,17 +356,18 @@ public class AStarSearch {
 		if(from == null)
 			name = "START: " + neighbor.nodeID;
 		else if(from!=null){
-			for(Segment s : graph.segments){
-				if(s.start.nodeID == from.nodeID && s.end.nodeID == neighbor.nodeID ||
-						s.start.nodeID == neighbor.nodeID && s.end.nodeID == from.nodeID){
-					name = s.road.name;
-				}
-			}
+			Segment s = graph.getSegmentFromPoints(from, neighbor);
+			if(s != null)
+				name = s.road.name;
 		}
 
 		return name;
 	}
 
+	/**Seconds added to the time of an arc into a node with traffic lights (-Dmapper.lightDelay),
+	 * see CsrGraph.build. Every time search uses it through the arc times.*/
+	public static final int LIGHT_DELAY = Integer.getInteger("mapper.lightDelay", 5);
+
 	/**Parses the road speed depending on the number given as input
 	 *
 	 * @return int speed - the speed in km/h */
@@ -0,0 +1,243 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Bidirectional A* between two nodes of a RoutingGraph, by distance or time:
+ * one search runs forward from the start over the out arcs, the other
+ * backward from the goal over the in arcs (so one-way roads are followed the
+ * right way round by both), and the shortest path is the best place they meet.
+ *
+ * Both use the average potential pf(v) = (pt(v) - ps(v)) / 2, where pt is the
+ * heuristic to the goal and ps the one from the start: the forward key of a
+ * node is dF(v) + pf(v) and the backward key dB(v) - pf(v). Since pt and ps
+ * are both consistent so are pf and -pf, every settled label is final, and
+ * the search can stop as soon as minKeyF + minKeyB >= mu, the best meeting
+ * cost found so far. Each step expands the side with the smaller key.
+ *
+ * Turn restrictions are checked against the arc a label was reached by, on
+ * both sides and where the two halves join. Like the node based AStarSearch a
+ * node keeps a single label, so for routes only a restriction forces, use the
+ * TurnGraph instead.
+ *
+ * One instance per query. The search state is in this thread's two
+ * SearchWorkspaces, so queries can run on many threads.
+ *
+ * Usage: java BidirectionalSearch <data directory> [queries] - compares it to AStarSearch
+ */
+public class BidirectionalSearch {
+
+	private final RoutingGraph g;
+	private final boolean byTime;
+
+	private int[] arcs;
+	private double cost = SearchWorkspace.UNREACHED;
+	private int settledForward, settledBackward;
+
+	public BidirectionalSearch(RoutingGraph g, boolean byTime) {
+		this.g = g;
+		this.byTime = byTime;
+	}
+
+	/**Finds the shortest (or fastest) path between two dense node indices
+	 *
+	 * @return int[] - arcs from the goal back to the start, like AStarSearch.arcPath, or null if there is no path*/
+	public int[] search(int start, int goal) {
+
+		SearchWorkspace fw = SearchWorkspace.forThread(g.nodeCount());
+		SearchWorkspace bw = SearchWorkspace.backwardForThread(g.nodeCount());
+		PriorityQueue<FringeNode> forward = new PriorityQueue<FringeNode>();
+		PriorityQueue<FringeNode> backward = new PriorityQueue<FringeNode>();
+
+		double mu = start == goal ? 0 : SearchWorkspace.UNREACHED;
+		int meetForward = -1, meetBackward = -1;		//Arcs either side of the best meeting point
+
+		fw.reach(start, 0, -1);
+		forward.offer(new FringeNode(start, -1, -1, 0, potential(start, start, goal)));
+		bw.reach(goal, 0, -1);
+		backward.offer(new FringeNode(goal, -1, -1, 0, -potential(goal, start, goal)));
+
+		while (true) {
+
+			double minForward = minKey(forward, fw), minBackward = minKey(backward, bw);
+			if (minForward + minBackward >= mu)			//STOP CONDITION - no unsettled meeting can be cheaper
+				break;
+
+			if (minForward <= minBackward) {
+				FringeNode fn = forward.poll();
+				int node = fn.getNode();
+				fw.settle(node);
+				fw.reach(node, fn.getCostToHere(), fn.getArc());
+				int arrived = fn.getArc();
+
+				for (int a = g.begin(node), end = g.end(node); a < end; a++) {
+					int to = g.target(a);
+					if (arrived >= 0 && g.isTurnRestricted(arrived, a))
+						continue;
+
+					double costToNeigh = fn.getCostToHere() + weight(a);
+					if (bw.isReached(to)) {						//Joins the backward search
+						int leave = bw.arc(to);
+						double through = costToNeigh + bw.cost(to);
+						if (through < mu && (leave < 0 || !g.isTurnRestricted(a, leave))) {
+							mu = through;
+							meetForward = a;
+							meetBackward = leave;
+						}
+					}
+					if (fw.isSettled(to) || costToNeigh >= fw.cost(to))
+						continue;
+					fw.reach(to, costToNeigh, a);
+					forward.offer(new FringeNode(to, node, a, costToNeigh, costToNeigh + potential(to, start, goal)));
+				}
+			} else {
+				FringeNode fn = backward.poll();
+				int node = fn.getNode();
+				bw.settle(node);
+				bw.reach(node, fn.getCostToHere(), fn.getArc());
+				int leaving = fn.getArc();						//Arc from node towards the goal
+
+				for (int p = g.inBegin(node), end = g.inEnd(node); p < end; p++) {
+					int a = g.inArc(p), from = g.source(a);
+					if (leaving >= 0 && g.isTurnRestricted(a, leaving))
+						continue;
+
+					double costToNeigh = fn.getCostToHere() + weight(a);
+					if (fw.isReached(from)) {					//Joins the forward search
+						int enter = fw.arc(from);
+						double through = fw.cost(from) + costToNeigh;
+						if (through < mu && (enter < 0 || !g.isTurnRestricted(enter, a))) {
+							mu = through;
+							meetForward = enter;
+							meetBackward = a;
+						}
+					}
+					if (bw.isSettled(from) || costToNeigh >= bw.cost(from))
+						continue;
+					bw.reach(from, costToNeigh, a);
+					backward.offer(new FringeNode(from, node, a, costToNeigh, costToNeigh - potential(from, start, goal)));
+				}
+			}
+		}
+
+		settledForward = fw.settledCount();
+		settledBackward = bw.settledCount();
+		if (mu == SearchWorkspace.UNREACHED)
+			return arcs = null;
+		cost = mu;
+		return arcs = join(fw, bw, meetForward, meetBackward);
+	}
+
+	/**Puts the two halves together: the arcs from the goal back to the meeting
+	 * point, then from there back to the start. Both chains continue from
+	 * settled nodes, whose labels no longer change.*/
+	private int[] join(SearchWorkspace fw, SearchWorkspace bw, int meetForward, int meetBackward) {
+
+		int before = 0, after = 0;
+		for (int a = meetBackward; a >= 0; a = bw.arc(g.target(a)))
+			after++;
+		for (int a = meetForward; a >= 0; a = fw.arc(g.source(a)))
+			before++;
+
+		int[] path = new int[after + before];
+		int i = after;
+		for (int a = meetBackward; a >= 0; a = bw.arc(g.target(a)))
+			path[--i] = a;								//Meeting point towards the goal, stored goal end first
+		i = after;
+		for (int a = meetForward; a >= 0; a = fw.arc(g.source(a)))
+			path[i++] = a;								//Meeting point back to the start
+		return path;
+	}
+
+	/**Returns the smallest key of a fringe, dropping entries for nodes already settled*/
+	private static double minKey(PriorityQueue<FringeNode> fringe, SearchWorkspace ws) {
+		while (!fringe.isEmpty() && ws.isSettled(fringe.peek().getNode()))
+			fringe.poll();
+		return fringe.isEmpty() ? SearchWorkspace.UNREACHED : fringe.peek().getTotEstCost();
+	}
+
+	private double weight(int arc) {
+		return byTime ? g.time(arc) : g.length(arc);
+	}
+
+	/**Returns pf(v) = (pt(v) - ps(v)) / 2*/
+	private double potential(int node, int start, int goal) {
+		return (estimate(node, goal) - estimate(start, node)) / 2;
+	}
+
+	private double estimate(int from, int to) {
+		double bound = g.distanceBound(from, to);
+		return byTime ? bound / 150 * 3600 : bound;			//Divide by MAX SPEED
+	}
+
+	/**Returns the cost of the last path found, in km or seconds*/
+	public double getCost() {
+		return cost;
+	}
+
+	public int[] getArcs() {
+		return arcs;
+	}
+
+	public int getSettledForward() {
+		return settledForward;
+	}
+
+	public int getSettledBackward() {
+		return settledBackward;
+	}
+
+	/**Returns the nodes both halves of the last search settled*/
+	public int getSettled() {
+		return settledForward + settledBackward;
+	}
+
+	//===========================COMPARISON========================
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 1) {
+			System.out.println("Usage: java BidirectionalSearch <data directory> [queries]");
+			return;
+		}
+		System.setProperty("java.awt.headless", "true");
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		CsrGraph csr = MapEngine.load(new File(args[0])).getGraph().getCsr();
+		Random random = new Random(1);
+
+		for (int mode = 0; mode < 2; mode++) {
+			boolean byTime = mode == 1;
+			BidirectionalSearch search = new BidirectionalSearch(csr, byTime);
+			long oneTime = 0, bothTime = 0, oneSettled = 0, bothSettled = 0;
+			int found = 0, cheaper = 0, dearer = 0;
+
+			for (int q = 0; q < queries; q++) {
+				int from = random.nextInt(csr.nodeCount), to = random.nextInt(csr.nodeCount);
+
+				long t0 = System.nanoTime();
+				SearchWorkspace ws = byTime ? AStarSearch.timeSearch(csr, from, to) : AStarSearch.distSearch(csr, from, to);
+				oneSettled += ws.settledCount();
+				double one = ws.isSettled(to) ? ws.cost(to) : SearchWorkspace.UNREACHED;
+				long t1 = System.nanoTime();
+				search.search(from, to);
+				long t2 = System.nanoTime();
+				bothSettled += search.getSettled();
+
+				oneTime += t1 - t0;
+				bothTime += t2 - t1;
+				if (search.getArcs() != null)
+					found++;
+				double both = search.getArcs() == null ? SearchWorkspace.UNREACHED : search.getCost();
+				if (both < one - 1e-9)
+					cheaper++;
+				else if (both > one + 1e-9)
+					dearer++;
+			}
+			System.out.printf("%s: unidirectional %.2fms %d settled, bidirectional %.2fms %d settled, %d found, %d cheaper, %d dearer%n",
+					byTime ? "time" : "distance", oneTime / 1e6 / queries, oneSettled / queries,
+					bothTime / 1e6 / queries, bothSettled / queries, found, cheaper, dearer);
+		}
+	}
+}
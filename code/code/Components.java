@@ -0,0 +1,61 @@
+import java.util.Arrays;
+
+/**
+ * Connected components of a RoutingGraph, by dense node index, so they can be
+ * found on either storage backend. Arcs are followed both ways (out and in
+ * lists), giving the same undirected components as Graph.findAllSubGraphs.
+ */
+public class Components {
+
+	private Components() {}
+
+	/**Labels every node with its component, numbered 0.. in order of their lowest node index
+	 *
+	 * @return int[] - component per node index*/
+	public static int[] label(RoutingGraph g) {
+
+		int n = g.nodeCount();
+		int[] component = new int[n];
+		Arrays.fill(component, -1);
+		int[] queue = new int[n];
+		int count = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (component[root] >= 0)
+				continue;
+
+			int head = 0, tail = 0;					//Breadth First Search from a node not reached yet
+			queue[tail++] = root;
+			component[root] = count;
+
+			while (head < tail) {
+				int cur = queue[head++];
+
+				for (int a = g.begin(cur), end = g.end(cur); a < end; a++) {
+					int to = g.target(a);
+					if (component[to] < 0) {
+						component[to] = count;
+						queue[tail++] = to;
+					}
+				}
+				for (int p = g.inBegin(cur), end = g.inEnd(cur); p < end; p++) {
+					int from = g.source(g.inArc(p));
+					if (component[from] < 0) {
+						component[from] = count;
+						queue[tail++] = from;
+					}
+				}
+			}
+			count++;
+		}
+		return component;
+	}
+
+	/**@return int - number of components in a labelling from label*/
+	public static int count(int[] component) {
+		int max = -1;
+		for (int c : component)
+			max = Math.max(max, c);
+		return max + 1;
+	}
+}
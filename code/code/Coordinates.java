@@ -0,0 +1,115 @@
+import java.util.Arrays;
+
+/**
+ * The coordinates of a Graph in packed arrays rather than one Location object
+ * per Node and per Segment point: Node positions by dense Node index (x and y
+ * side by side), and every Segment's points in one shared polyline buffer
+ * that the Segment refers to by offset and count (see Segment.firstPoint).
+ *
+ * All values are in Location units. Points of a removed Segment are left in
+ * the buffer, deltas are small next to the map.
+ *
+ * Not thread safe, written by one load step or delta at a time.
+ */
+public class Coordinates {
+
+	private double[] nodes;					//x, y per Node index
+	private double[] points;				//x, y per polyline point
+	private int pointCount;
+
+	public Coordinates() {
+		this(16, 64);
+	}
+
+	public Coordinates(int nodeCount, int pointCount) {
+		this.nodes = new double[Math.max(nodeCount, 4) * 2];
+		this.points = new double[Math.max(pointCount, 4) * 2];
+	}
+
+	//===========================NODES=============================
+
+	public double x(int node) {
+		return nodes[2 * node];
+	}
+
+	public double y(int node) {
+		return nodes[2 * node + 1];
+	}
+
+	public Location location(int node) {
+		return new Location(x(node), y(node));
+	}
+
+	/**Sets the position of the Node with the given index, in Location units*/
+	public void setNode(int node, double x, double y) {
+		if (2 * node + 1 >= nodes.length)
+			nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, 2 * node + 2));
+		nodes[2 * node] = x;
+		nodes[2 * node + 1] = y;
+	}
+
+	public void setNodeLatLon(int node, double lat, double lon) {
+		setNode(node, Location.xFromLatLon(lat, lon), Location.yFromLatLon(lat));
+	}
+
+	/**Copies the position of one Node index to another, for when IdTable moves a Node*/
+	public void moveNode(int from, int to) {
+		setNode(to, x(from), y(from));
+	}
+
+	/**Returns the packed Node positions, x at 2i and y at 2i + 1. The array is
+	 * replaced when it grows, so don't keep it past a delta.*/
+	double[] nodeArray() {
+		return nodes;
+	}
+
+	//===========================POINTS============================
+
+	public double pointX(int point) {
+		return points[2 * point];
+	}
+
+	public double pointY(int point) {
+		return points[2 * point + 1];
+	}
+
+	public int pointCount() {
+		return pointCount;
+	}
+
+	/**Appends the first count values of a lat/lon coordinate list as points
+	 *
+	 * @return int - index of the first point added*/
+	public int addLatLon(double[] coords, int count) {
+		int first = pointCount;
+		ensurePoints(count / 2);
+		for (int i = 0; i + 1 < count; i += 2) {
+			points[2 * pointCount] = Location.xFromLatLon(coords[i], coords[i + 1]);
+			points[2 * pointCount + 1] = Location.yFromLatLon(coords[i]);
+			pointCount++;
+		}
+		return first;
+	}
+
+	/**Appends all the points of another buffer, e.g. one filled by a parsing thread
+	 *
+	 * @return int - index the other buffer's first point now has*/
+	public int addPoints(Coordinates other) {
+		int first = pointCount;
+		ensurePoints(other.pointCount);
+		System.arraycopy(other.points, 0, points, 2 * pointCount, 2 * other.pointCount);
+		pointCount += other.pointCount;
+		return first;
+	}
+
+	/**Replaces the points with x, y pairs already in Location units, used when restoring a snapshot*/
+	void setPoints(double[] xy, int count) {
+		this.points = xy;
+		this.pointCount = count;
+	}
+
+	private void ensurePoints(int extra) {
+		if (2 * (pointCount + extra) > points.length)
+			points = Arrays.copyOf(points, Math.max(points.length * 2, 2 * (pointCount + extra)));
+	}
+}
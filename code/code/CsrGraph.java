@@ -0,0 +1,230 @@
+import java.util.Arrays;
+
+/**
+ * An array based copy of the road graph for searching, in
+ * compressed sparse row form. Nodes keep the dense indices 0..n-1 the loader
+ * gave them (see IdTable) and the arcs leaving node i are offsets[i] .. offsets[i + 1] - 1, so a
+ * search only walks int and double arrays and never touches a Node or
+ * Segment in its inner loop.
+ *
+ * Arcs are the Nodes' out-neighbour lists, which the loader fills with the
+ * direction already worked out (see Parser.addNeighbours): a two-way Segment
+ * gives an arc each way, a one-way Segment only an arc from its start to its
+ * end, so a search never looks at Road.oneWay. Each arc also appears in the
+ * incoming list of its head, inOffsets[i] .. inOffsets[i + 1] - 1 of inArcs,
+ * for searches that run backwards from the destination.
+ *
+ * Turn restrictions are compiled to the pairs of arcs they forbid, see
+ * TurnRestrictions, so checking a turn is one hash probe.
+ *
+ * Built when the Graph is loaded and rebuilt after a delta that changes the
+ * nodes, arcs or restrictions, see Graph.getCsr. A delta that only changes
+ * lengths or speeds patches the arc weights in place instead, see reweigh;
+ * nothing else changes after it is built. OffHeapGraph can copy one out of
+ * the Java heap.
+ */
+public class CsrGraph implements RoutingGraph {
+
+	public final int nodeCount, arcCount;
+
+	final Node[] nodes;						//Dense index -> Node
+	private final IdTable<Node> table;		//For file id lookups
+	final int[] offsets;					//nodeCount + 1 entries
+	final int[] sources;					//Arc -> tail node index
+	final int[] targets;					//Arc -> head node index
+	final double[] lengths;					//Arc -> length in km
+	final double[] times;					//Arc -> seconds at the speed limit, plus the light delay at its head
+	final int[] roadIDs;					//Arc -> Road.roadID
+	final Segment[] segments;				//Arc -> Segment, to turn results back into Segments
+
+	final int[] inOffsets;					//nodeCount + 1 entries
+	final int[] inArcs;						//Arcs grouped by head node
+
+	final double[] xy;						//Packed node coordinates from the Graph's Coordinates, for the heuristics
+	double heuristicScale = 1;				//Largest factor that keeps straight line distances below arc lengths
+	final boolean[] lights;					//Node has traffic lights
+	TurnRestrictions turns;					//Forbidden (incoming arc, outgoing arc) pairs
+
+	private CsrGraph(IdTable<Node> table, Node[] nodes, int arcCount, double[] xy) {
+		this.nodeCount = nodes.length;
+		this.arcCount = arcCount;
+		this.table = table;
+		this.nodes = nodes;
+		this.offsets = new int[nodeCount + 1];
+		this.sources = new int[arcCount];
+		this.targets = new int[arcCount];
+		this.lengths = new double[arcCount];
+		this.times = new double[arcCount];
+		this.roadIDs = new int[arcCount];
+		this.segments = new Segment[arcCount];
+		this.inOffsets = new int[nodeCount + 1];
+		this.inArcs = new int[arcCount];
+		this.xy = xy;
+		this.lights = new boolean[nodeCount];
+	}
+
+	/**Copies the arcs of the Nodes into arrays, in Node index order*/
+	public static CsrGraph build(IdTable<Node> table, Coordinates coords) {
+
+		Node[] nodes = new Node[table.size()];
+		int arcs = 0;
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = table.at(i);
+			arcs += nodes[i].getOutNeighbours().size();
+		}
+
+		CsrGraph csr = new CsrGraph(table, nodes, arcs, coords.nodeArray());		//Shared, a delta that moves Nodes rebuilds this
+		for (int i = 0; i < nodes.length; i++)
+			csr.lights[i] = nodes[i].hasLights;						//Before the arcs, their times need the lights at their heads
+		int a = 0;
+		for (int i = 0; i < nodes.length; i++) {
+			Node n = nodes[i];
+			csr.offsets[i] = a;
+
+			for (Segment s : n.getOutNeighbours()) {			//A two-way loop is in the list twice, once each way
+				csr.sources[a] = i;
+				csr.targets[a] = s.other(n).index;
+				csr.roadIDs[a] = s.road.roadID;
+				csr.segments[a] = s;
+				csr.weigh(a);
+				a++;
+			}
+		}
+		csr.offsets[nodes.length] = a;
+
+		//Incoming arcs, a counting sort of the arcs by head
+		for (int arc = 0; arc < arcs; arc++)
+			csr.inOffsets[csr.targets[arc] + 1]++;
+		for (int i = 0; i < nodes.length; i++)
+			csr.inOffsets[i + 1] += csr.inOffsets[i];
+		int[] next = Arrays.copyOf(csr.inOffsets, nodes.length);
+		for (int arc = 0; arc < arcs; arc++)
+			csr.inArcs[next[csr.targets[arc]]++] = arc;
+
+		csr.turns = TurnRestrictions.build(csr, nodes);		//Needs both arc directions
+		return csr;
+	}
+
+	/**Sets the length and time of an arc from its Segment*/
+	private void weigh(int arc) {
+		Segment s = segments[arc];
+		lengths[arc] = s.length;
+		times[arc] = s.length / AStarSearch.getRoadSpeed(s.road.speed) * 3600
+				+ (lights[targets[arc]] ? AStarSearch.LIGHT_DELAY : 0);		//Waiting at the lights it leads to
+
+		//The recorded lengths can be shorter than the straight line between the
+		//Location coordinates, scale the heuristics down so they never overestimate
+		double straight = straightLine(sources[arc], targets[arc]);
+		if (straight > 0)
+			heuristicScale = Math.min(heuristicScale, lengths[arc] / straight);
+	}
+
+	/**Recomputes the lengths and times of a Segment's arcs after its length or
+	 * its Road's speed changed, in time proportional to the degree of its Nodes*/
+	void reweigh(Segment s) {
+		for (Node n : new Node[] {s.start, s.end}) {
+			for (int arc = offsets[n.index]; arc < offsets[n.index + 1]; arc++) {
+				if (segments[arc] == s)
+					weigh(arc);
+			}
+		}
+	}
+
+	public int nodeCount() {
+		return nodeCount;
+	}
+
+	public int arcCount() {
+		return arcCount;
+	}
+
+	/**Returns the dense index of a Node*/
+	public int index(Node node) {
+		return node.index;
+	}
+
+	public Node node(int index) {
+		return nodes[index];
+	}
+
+	/**Returns the first arc leaving the node, the arcs run up to (not including) end(node)*/
+	public int begin(int node) {
+		return offsets[node];
+	}
+
+	public int end(int node) {
+		return offsets[node + 1];
+	}
+
+	/**Returns the first incoming arc of the node, as a position in inArc, they run up to inEnd(node)*/
+	public int inBegin(int node) {
+		return inOffsets[node];
+	}
+
+	public int inEnd(int node) {
+		return inOffsets[node + 1];
+	}
+
+	/**Returns the arc at the given position of the incoming lists*/
+	public int inArc(int position) {
+		return inArcs[position];
+	}
+
+	public int source(int arc) {
+		return sources[arc];
+	}
+
+	public int target(int arc) {
+		return targets[arc];
+	}
+
+	public double length(int arc) {
+		return lengths[arc];
+	}
+
+	public double time(int arc) {
+		return times[arc];
+	}
+
+	public int roadID(int arc) {
+		return roadIDs[arc];
+	}
+
+	public Segment segment(int arc) {
+		return segments[arc];
+	}
+
+	public boolean hasLights(int node) {
+		return lights[node];
+	}
+
+	public boolean isTurnRestricted(int inArc, int outArc) {
+		return turns.contains(inArc, outArc);
+	}
+
+	public double x(int node) {
+		return xy[2 * node];
+	}
+
+	public double y(int node) {
+		return xy[2 * node + 1];
+	}
+
+	/**Returns a lower bound on the road distance between two nodes, in km*/
+	public double distanceBound(int from, int to) {
+		return straightLine(from, to) * heuristicScale;
+	}
+
+	public int nodeID(int node) {
+		return nodes[node].nodeID;
+	}
+
+	public int indexOf(int nodeID) {
+		return table.indexOf(nodeID);
+	}
+
+	private double straightLine(int from, int to) {
+		double dx = xy[2 * from] - xy[2 * to], dy = xy[2 * from + 1] - xy[2 * to + 1];
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+}
@@ -0,0 +1,122 @@
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A collection that numbers its elements 0..size-1 in the order they were
+ * added and stores that number in each element, so algorithms can keep their
+ * per-Node (or per-Segment, per-Road) state in plain arrays indexed by it.
+ *
+ * Removing an element moves the last one into its place, so indices stay
+ * contiguous but the moved element's index changes; anything built on the old
+ * numbering (CsrGraph, search arrays) has to be rebuilt after a removal.
+ *
+ * Not thread safe.
+ */
+public class DenseList<T extends DenseList.Indexed> extends AbstractCollection<T> {
+
+	/**An element that remembers its position in a DenseList*/
+	public interface Indexed {
+		int getIndex();
+		void setIndex(int index);
+	}
+
+	private Object[] items;
+	private int size;
+
+	public DenseList() {
+		this(16);
+	}
+
+	public DenseList(int capacity) {
+		this.items = new Object[Math.max(capacity, 4)];
+	}
+
+	/**Returns the element with the given index*/
+	@SuppressWarnings("unchecked")
+	public T get(int index) {
+		if (index >= size)
+			throw new IndexOutOfBoundsException(index + " of " + size);
+		return (T) items[index];
+	}
+
+	/**Appends the element and gives it the next index*/
+	@Override
+	public boolean add(T item) {
+		if (size == items.length)
+			items = Arrays.copyOf(items, size * 2);
+		item.setIndex(size);
+		items[size++] = item;
+		return true;
+	}
+
+	/**Puts the element in place of the one at the given index*/
+	void set(int index, T item) {
+		get(index).setIndex(-1);
+		item.setIndex(index);
+		items[index] = item;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Indexed))
+			return false;
+		int index = ((Indexed) o).getIndex();
+		return index >= 0 && index < size && items[index] == o;
+	}
+
+	/**Removes the element, moving the last element into its index*/
+	@Override
+	public boolean remove(Object o) {
+		if (!contains(o))
+			return false;
+		removeAt(((Indexed) o).getIndex());
+		return true;
+	}
+
+	/**Removes the element at the given index, moving the last element into it
+	 *
+	 * @return T - the removed element*/
+	T removeAt(int index) {
+		T removed = get(index);
+		T last = get(size - 1);
+		items[index] = last;
+		last.setIndex(index);
+		items[--size] = null;
+		removed.setIndex(-1);
+		return removed;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			get(i).setIndex(-1);
+			items[i] = null;
+		}
+		size = 0;
+	}
+
+	/**Iterates in index order, removal is not supported*/
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private int next = 0;
+
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			public T next() {
+				if (next >= size)
+					throw new NoSuchElementException();
+				return get(next++);
+			}
+		};
+	}
+}
@@ -0,0 +1,71 @@
+import java.util.Arrays;
+
+/**
+ * Finds the Segment joining two Nodes in constant time, for the places that
+ * only know the two ends of a step (a highlighted path, a road name for a
+ * pair of Nodes) rather than the Segment itself.
+ *
+ * An open addressing table keyed by the pair of dense Node indices, smaller
+ * index first so either direction finds it. Where two Segments join the same
+ * pair of Nodes the shorter one is kept, which is the one a shortest path
+ * would use. Built by Graph.getEdgeIndex and rebuilt after a delta, since the
+ * indices it is keyed by can change.
+ */
+public class EdgeIndex {
+
+	private static final long EMPTY = -1;
+
+	private final long[] keys;
+	private final Segment[] segments;
+	private final int mask;
+
+	private EdgeIndex(int capacity) {
+		this.keys = new long[capacity];
+		this.segments = new Segment[capacity];
+		this.mask = capacity - 1;
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**Indexes every Segment by its two end Nodes*/
+	public static EdgeIndex build(Iterable<Segment> all, int count) {
+		EdgeIndex index = new EdgeIndex(Integer.highestOneBit(Math.max(8, count * 2) - 1) << 1);
+		for (Segment s : all)
+			index.add(s);
+		return index;
+	}
+
+	private void add(Segment s) {
+		long key = key(s.start.index, s.end.index);
+		int i = slot(key);
+		for (; keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				if (s.length < segments[i].length)
+					segments[i] = s;
+				return;
+			}
+		}
+		keys[i] = key;
+		segments[i] = s;
+	}
+
+	/**Returns the Segment joining the two Nodes in either direction, or null*/
+	public Segment get(Node a, Node b) {
+		if (a.index < 0 || b.index < 0)
+			return null;
+		long key = key(a.index, b.index);
+		for (int i = slot(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key)
+				return segments[i];
+		}
+		return null;
+	}
+
+	private static long key(int a, int b) {
+		return a < b ? (long) a << 32 | b : (long) b << 32 | a;
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+}
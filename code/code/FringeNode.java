@@ -1,17 +1,19 @@
 
 public class FringeNode implements Comparable<FringeNode> {
 
-	private Node node;
-	private Node parent;
+	private int node;				//Dense node indices, see CsrGraph
+	private int parent;
+	private int arc;				//CsrGraph arc it was reached by, -1 at the start
 	private double costToHere;
 	private double totEstCost;
 
 	private double totalCostToGoal;
 	private double distToGoal;
 
-	public FringeNode(Node node, Node parent, double costToHere, double totEstCost){
+	public FringeNode(int node, int parent, int arc, double costToHere, double totEstCost){
 		this.node = node;
 		this.parent = parent;
+		this.arc = arc;
 		this.costToHere = costToHere;
 		this.totEstCost = totEstCost;
 
@@ -19,28 +21,38 @@ public class FringeNode implements Comparable<FringeNode> {
 
 
 
-	public Node getNode() {
+	public int getNode() {
 		return node;
 	}
 
-	public void setNode(Node node) {
+	public void setNode(int node) {
 		this.node = node;
 	}
 
 
 
-	public Node getParent() {
+	public int getParent() {
 		return parent;
 	}
 
 
 
-	public void setParent(Node parent) {
+	public void setParent(int parent) {
 		this.parent = parent;
 	}
 
 
 
+	public int getArc() {
+		return arc;
+	}
+
+	public void setArc(int arc) {
+		this.arc = arc;
+	}
+
+
+
 	public double getCostToHere() {
 		return costToHere;
 	}
@@ -1,44 +1,56 @@
 
 public class FringeTimeNode implements Comparable<FringeTimeNode>{
 
-	private Node node;
-	private Node parent;
+	private int node;				//Dense node indices, see CsrGraph
+	private int parent;
+	private int arc;				//CsrGraph arc it was reached by, -1 at the start
 	private double timeCostToHere;
 	private double totEstTimeCost;
 
 	private double totalTimeCostToGoal;
 	private double timeToGoal;
 
-	public FringeTimeNode(Node node, Node parent, double timeCostToHere, double totEstTimeCost){
+	public FringeTimeNode(int node, int parent, int arc, double timeCostToHere, double totEstTimeCost){
 
 		this.node = node;
 		this.parent = parent;
+		this.arc = arc;
 		this.timeCostToHere = timeCostToHere;
 		this.totEstTimeCost = totEstTimeCost;
 
 	}
 
-	public Node getNode() {
+	public int getNode() {
 		return node;
 	}
 
-	public void setNode(Node node) {
+	public void setNode(int node) {
 		this.node = node;
 	}
 
 
 
-	public Node getParent() {
+	public int getParent() {
 		return parent;
 	}
 
 
 
-	public void setParent(Node parent) {
+	public void setParent(int parent) {
 		this.parent = parent;
 	}
 
 
+	public int getArc() {
+		return arc;
+	}
+
+	public void setArc(int arc) {
+		this.arc = arc;
+	}
+
+
+
 	public double getTimeCostToHere() {
 		return timeCostToHere;
 	}
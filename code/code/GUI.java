@@ -181,12 +181,12 @@ public abstract class GUI {
 	private static final int TEXT_OUTPUT_ROWS = 5;
 	private static final int SEARCH_COLS = 15;
 
-	private static final String NODES_FILENAME = "nodeID-lat-lon.tab";
-	private static final String ROADS_FILENAME = "roadID-roadInfo.tab";
-	private static final String SEGS_FILENAME = "roadSeg-roadID-length-nodeID-nodeID-coords.tab";
-	private static final String POLYS_FILENAME = "polygon-shapes.mp";
-	private static final String REST_FILENAME = "restrictions.tab";
-	private static final String TRAFFIC_FILENAME = "traffic-lights";
+	static final String NODES_FILENAME = "nodeID-lat-lon.tab";
+	static final String ROADS_FILENAME = "roadID-roadInfo.tab";
+	static final String SEGS_FILENAME = "roadSeg-roadID-length-nodeID-nodeID-coords.tab";
+	static final String POLYS_FILENAME = "polygon-shapes.mp";
+	static final String REST_FILENAME = "restrictions.tab";
+	static final String TRAFFIC_FILENAME = "traffic-lights";
 
 	/*
 	 * In Swing, everything is a component; buttons, graphics panes, tool tips,
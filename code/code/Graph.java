@@ -1,8 +1,3 @@
-import java.awt.BasicStroke;
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -13,9 +8,11 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * This represents the data structure storing all the roads, nodes, and
@@ -25,14 +22,19 @@ import java.util.Set;
  * @author tony
  */
 public class Graph {
-	// map node IDs to Nodes.
-	Map<Integer, Node> nodes = new HashMap<>();
-	// map road IDs to Roads.
-	Map<Integer, Road> roads;
-	// just some collection of Segments.
-	Collection<Segment> segments;
+	// Nodes by dense index, and by node ID.
+	IdTable<Node> nodes = new IdTable<>();
+	// Roads by dense index, and by road ID.
+	IdTable<Road> roads;
+	// Segments by dense index.
+	DenseList<Segment> segments;
 	// restrictions
 	Collection<Restriction> restrictions;
+	// node positions and segment points, see Coordinates
+	final Coordinates coords = new Coordinates();
+	// shared road names and cities, see Road.rename
+	final SymbolTable roadNames = new SymbolTable();
+	final SymbolTable cities = new SymbolTable();
 	// polygons
 	List<Polygon> polygons = new ArrayList<Polygon>();
 
@@ -41,65 +43,254 @@ public class Graph {
 	Collection<Node> articulationPoints = new LinkedList<>();
 
 	List<List<Node>> subNodes = new ArrayList<List<Node>>();
+	Map<Node, List<Node>> componentOf = new HashMap<Node, List<Node>>();		//Node -> its list in subNodes
 
 	Node highlightedNode, startNode, endNode;			//A* Variables
 	String point = null;
 
-	public Graph(File nodesFile, File roads, File segments, File polygonFile, File restrictions, File traffic) throws IOException {
-		this.nodes = Parser.parseNodes(nodesFile, this);
-		this.roads = Parser.parseRoads(roads, this);
-		this.segments = Parser.parseSegments(segments, this);
-		this.restrictions = Parser.parseRestrictions(restrictions, this);
-		this.polygons = Parser.parsePolygons(polygonFile, polygons);
-		Parser.parseTrafficLights(traffic, nodes);
+	private NodeIndex nodeIndex;				//Built on first use
+	private volatile CsrGraph csr;				//Built when loaded, rebuilt on first use after a delta
+	private EdgeIndex edgeIndex;				//Built on first use
+	private RoadNameIndex roadNameIndex;		//Built when loaded, rebuilt on first use after a delta
+	private Trie trie;							//Built when loaded by MapEngine, rebuilt on first use after a delta
+	private TurnGraph turnGraph;				//Built on first use, or when loaded if TURN_GRAPH is set
+	private Partition partition;					//Set by MapEngine.getPartition, by dense node index like the CsrGraph
+	private boolean modified;					//Arcs changed by a delta since the files were loaded
+
+	/**If set (-Dmapper.turnGraph=true), routes are found over the TurnGraph, see MapEngine*/
+	public static final boolean TURN_GRAPH = Boolean.getBoolean("mapper.turnGraph");
+
+	/**If set (-Dmapper.lazyPolygons=true), polygons are indexed rather than loaded, see PolygonIndex*/
+	public static final boolean LAZY_POLYGONS = Boolean.getBoolean("mapper.lazyPolygons");
+	private PolygonIndex polygonIndex;
 
+	/**If set (-Dmapper.legacyPolygons=true), polygons are read by the original Parser.parsePolygons instead of parsePolygonsStreaming*/
+	public static final boolean LEGACY_POLYGONS = Boolean.getBoolean("mapper.legacyPolygons");
 
-		findAllSubGraphs();			//Creates a List of List of Nodes that each represent a component of the graph
+	private final LoadProfile profile = new LoadProfile();
+
+	/**Creates an empty Graph, the fields are filled in by GraphSnapshot*/
+	Graph() {
+		this.roads = new IdTable<>();
+		this.segments = new DenseList<>();
+		this.restrictions = new HashSet<>();
 	}
 
-	public void draw(Graphics g, Dimension screen, Location origin, double scale) {
-		// a compatibility wart on swing is that it has to give out Graphics
-		// objects, but Graphics2D objects are nicer to work with. Luckily
-		// they're a subclass, and swing always gives them out anyway, so we can
-		// just do this.
-		Graphics2D g2 = (Graphics2D) g;
+	public Graph(File nodesFile, File roads, File segments, File polygonFile, File restrictions, File traffic) throws IOException {
+		this(nodesFile, roads, segments, polygonFile, restrictions, traffic, Parser.DEFAULT_MODE);
+	}
 
-		// draw all the segments.
-		g2.setColor(Mapper.SEGMENT_COLOUR);
-		for (Segment s : segments){
-			s.draw(g2, origin, scale);
-		}
+	/**Loads the Graph as a small task graph on the common ForkJoinPool:
+	 * nodes, roads and polygons are independent so they are parsed in parallel,
+	 * segments need nodes and roads, and restrictions and traffic lights need
+	 * nodes (and roads) but not each other. Each phase is measured, see
+	 * getProfile.*/
+	public Graph(File nodesFile, File roadsFile, File segmentsFile, File polygonFile, File restrictionsFile, File traffic, Parser.Mode mode) throws IOException {
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		long start = System.nanoTime();
+
+		//Stage 1 - no dependencies
+		ForkJoinTask<IdTable<Node>> nodeTask = pool.submit(timed("nodes", () ->
+				mode == Parser.Mode.READER ? Parser.parseNodes(nodesFile, this) : Parser.parseNodesMapped(nodesFile, this)));
+		ForkJoinTask<IdTable<Road>> roadTask = pool.submit(timed("roads", () -> Parser.parseRoads(roadsFile, this)));
+		ForkJoinTask<List<Polygon>> polygonTask = pool.submit(timed("polygons", () -> {
+			if (LAZY_POLYGONS) {
+				if (polygonFile != null)
+					polygonIndex = new PolygonIndex(polygonFile);		//Only index the file, decode on demand
+				return new ArrayList<Polygon>();
+			}
+			return LEGACY_POLYGONS ? Parser.parsePolygons(polygonFile, new ArrayList<Polygon>())
+					: Parser.parsePolygonsStreaming(polygonFile, new ArrayList<Polygon>());
+		}));
+
+		this.nodes = await(nodeTask);
+		this.roads = await(roadTask);
+
+		//Stage 2 - needs nodes and roads
+		this.segments = timed("segments", () -> {
+			switch (mode) {
+			case PARALLEL:
+				return Parser.parseSegmentsParallel(segmentsFile, this, pool);
+			case MAPPED:
+				return Parser.parseSegmentsMapped(segmentsFile, this);
+			default:
+				return Parser.parseSegments(segmentsFile, this);
+			}
+		}).call();
+
+		//Stage 3 - restrictions and lights touch different parts of the Nodes, so they can run together
+		ForkJoinTask<Collection<Restriction>> restrictionTask = pool.submit(timed("restrictions", () ->
+				Parser.parseRestrictions(restrictionsFile, this)));
+		ForkJoinTask<Object> lightTask = pool.submit(timed("lights", () -> {
+			Parser.parseTrafficLights(traffic, getNodeIndex());
+			return null;
+		}));
+
+		this.restrictions = await(restrictionTask);
+		await(lightTask);
+		this.polygons = await(polygonTask);
+
+		timed("components", () -> {
+			findAllSubGraphs();			//Creates a List of List of Nodes that each represent a component of the graph
+			return null;
+		}).call();
+
+		timed("arcs", this::getCsr).call();		//Directed arcs for the searches, needs restrictions and lights
+		timed("names", this::getRoadNameIndex).call();
+		if (TURN_GRAPH)
+			timed("turns", this::getTurnGraph).call();
+
+		profile.total("total", start);
+	}
 
-		//Draw Polygons
-		for (Polygon pol : polygons)
-			pol.drawPolygons(g2, screen, origin, scale);
+	/**Wraps a load phase so it is measured under the given name*/
+	private <T> LoadPhase<T> timed(String phase, LoadPhase<T> task) {
+		return () -> profile.measure(phase, task::call);
+	}
 
-		//Draw Highlighted Segments
-		g2.setColor(Mapper.HIGHLIGHT_COLOUR);
-		g2.setStroke(new BasicStroke(3));
-		if(highlightedSegments!=null){
-			for (Segment seg : highlightedSegments)
-				seg.draw(g2, origin, scale);
+	/**Waits for a load phase to finish, passing on any IOException it threw*/
+	private static <T> T await(ForkJoinTask<T> task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("loading interrupted", e);
+		} catch (ExecutionException e) {
+			for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+				if (cause instanceof IOException)
+					throw (IOException) cause;				//The pool wraps checked exceptions, unwrap them
+			}
+			throw new RuntimeException(e.getCause());
 		}
+	}
 
-		// draw all the nodes.
-		g2.setColor(Mapper.NODE_COLOUR);
-		for (Node n : nodes.values())
-			n.draw(g2, screen, origin, scale);
+	/**One step of the load pipeline, a Callable that only throws IOException*/
+	private interface LoadPhase<T> extends Callable<T> {
+		T call() throws IOException;
+	}
 
-		if(startNode!=null){
-			g2.setColor(Color.GREEN);								//Highlight Start and End Nodes
-			startNode.draw(g2, screen, origin, scale);
-		}
-		if(endNode!=null){
-			g2.setColor(Color.RED);
-			endNode.draw(g2, screen, origin, scale);
-		}
-		if(articulationPoints != null){
-			g2.setColor(Color.GREEN);
-			for(Node n : articulationPoints)
-				n.draw(g2, screen, origin, scale);					//Highlight Articulation Points
+	/**Applies a delta file in place, see GraphDelta for the format
+	 *
+	 * @return int - number of changes applied*/
+	public int applyDelta(File delta) throws IOException {
+		return new GraphDelta(this).apply(delta);
+	}
+
+	/**Drops the NodeIndex after Nodes were added, moved or removed, it is rebuilt on next use*/
+	synchronized void invalidateNodeIndex() {
+		nodeIndex = null;
+	}
+
+	/**Drops the CsrGraph, EdgeIndex, TurnGraph and Partition after the topology, weights or coordinates changed, they are rebuilt on next use*/
+	synchronized void invalidateCsr() {
+		csr = null;
+		edgeIndex = null;
+		turnGraph = null;
+		partition = null;
+		modified = true;
+	}
+
+	/**Returns the Partition of the current CsrGraph's nodes, or null if there is none yet*/
+	synchronized Partition cachedPartition() {
+		return partition;
+	}
+
+	synchronized void cachePartition(Partition partition) {
+		this.partition = partition;
+	}
+
+	/**Patches the weights of a Segment's arcs in the CsrGraph after a delta
+	 * changed its length or its Road's speed but not which Nodes it joins, so
+	 * nothing has to be rebuilt. The other indexes don't depend on weights.*/
+	synchronized void reweigh(Segment segment) {
+		if (csr != null)
+			csr.reweigh(segment);
+		modified = true;
+	}
+
+	/**Returns true once a delta has changed the arcs, so files built from the
+	 * source files (see GraphSnapshot.checksum) no longer describe this Graph*/
+	public synchronized boolean isModified() {
+		return modified;
+	}
+
+	/**Drops the RoadNameIndex and Trie after Roads were added, renamed or removed, they are rebuilt on next use*/
+	synchronized void invalidateRoadNames() {
+		roadNameIndex = null;
+		trie = null;
+	}
+
+	/**Returns the array form of the graph that the searches run on, building it
+	 * the first time. Only locks when it has to be built, concurrent queries
+	 * all call this.*/
+	public CsrGraph getCsr() {
+		CsrGraph built = csr;
+		if (built == null) {
+			synchronized (this) {
+				if (csr == null)
+					csr = CsrGraph.build(nodes, coords);
+				built = csr;
+			}
 		}
+		return built;
+	}
+
+	/**Returns the Segment lookup by end Nodes, building it the first time*/
+	public synchronized EdgeIndex getEdgeIndex() {
+		if (edgeIndex == null)
+			edgeIndex = EdgeIndex.build(segments, segments.size());
+		return edgeIndex;
+	}
+
+	/**Returns the edge based form of the CsrGraph, building it the first time*/
+	public synchronized TurnGraph getTurnGraph() {
+		if (turnGraph == null)
+			turnGraph = TurnGraph.build(getCsr());
+		return turnGraph;
+	}
+
+	/**Returns the Roads by name (and city), building the index the first time*/
+	public synchronized RoadNameIndex getRoadNameIndex() {
+		if (roadNameIndex == null)
+			roadNameIndex = RoadNameIndex.build(roads, roadNames, cities);
+		return roadNameIndex;
+	}
+
+	/**Returns the road name Trie for the search box, building it the first time*/
+	public synchronized Trie getTrie() {
+		if (trie == null)
+			trie = new Trie(roads);
+		return trie;
+	}
+
+	/**Returns the spatial index over all Nodes, building it the first time
+	 *
+	 * @return NodeIndex - nearest Node lookups by Location*/
+	public synchronized NodeIndex getNodeIndex() {
+		if (nodeIndex == null)
+			nodeIndex = new NodeIndex(nodes.values());
+		return nodeIndex;
+	}
+
+	public PolygonIndex getPolygonIndex() {
+		return polygonIndex;
+	}
+
+	public void setPolygonIndex(PolygonIndex polygonIndex) {
+		this.polygonIndex = polygonIndex;
+	}
+
+	/**Returns the measurements of each load phase, in the order they finished*/
+	public LoadProfile getProfile() {
+		return profile;
+	}
+
+	/**Returns the wall-clock time in milliseconds of each load phase, in the order they finished*/
+	public Map<String, Long> getPhaseTimes() {
+		Map<String, Long> times = new LinkedHashMap<String, Long>();
+		for (LoadProfile.Phase p : profile.getPhases())
+			times.put(p.name, p.wallNanos / 1000000);
+		return times;
 	}
 
 	public void setHighlight(Node node, String point) {
@@ -115,17 +306,10 @@ public class Graph {
 		this.highlightedRoads = roads;
 	}
 
+	/**Returns the Segment joining the two Nodes in either direction (the
+	 * shortest if there are several), or null. Constant time, see EdgeIndex.*/
 	public Segment getSegmentFromPoints(Node from, Node to){
-
-		Segment segment = null;
-
-		for(Segment s : segments){
-			if(s.start.nodeID == from.nodeID && s.end.nodeID == to.nodeID
-					|| s.start.nodeID == to.nodeID && s.end.nodeID == from.nodeID){
-				segment = s;
-			}
-		}
-		return segment;
+		return getEdgeIndex().get(from, to);
 	}
 
 	public void setHighlightPath(List<Segment> path, Node start, Node end) {
@@ -138,70 +322,48 @@ public class Graph {
 		this.articulationPoints = articulationPoints;
 	}
 
-	/**Breadth First Search algo to find all disconnected Nodes on the graph*/
+	/**Breadth First Search algo to find all disconnected Nodes on the graph.
+	 * Works on the dense Node indices: the next root is the lowest index not
+	 * reached yet, so the whole pass is linear.*/
 	public void findAllSubGraphs(){
 
-		//Breadth First Search
-		int counter = 0, MAX_NODES = nodes.size();
-		int INF = (int)Double.POSITIVE_INFINITY;
+		int n = nodes.size();
+		boolean[] reached = new boolean[n];
+		int[] queue = new int[n];
 
-		for(Node n : nodes.values()){
-			n.setDist(INF);
-			n.setParent(null);
-		}
-
-		while(counter != MAX_NODES){
-
-			Node root = getNewNode();							//Get a disconnected Node, perform BFS
-			Queue<Node> queue = new LinkedList<Node>();
-			List<Node> subN = new ArrayList<Node>();
+		for(int root = 0; root < n; root++){
+			if(reached[root])
+				continue;
 
-			root.setDist(0);
-			queue.add(root);
+			List<Node> subN = new ArrayList<Node>();		//Breadth First Search from a disconnected Node
+			int head = 0, tail = 0;
+			queue[tail++] = root;
+			reached[root] = true;
 
-			Node cur = null;
-			while(!queue.isEmpty()){
+			while(head < tail){
 
-				cur = queue.poll();
+				Node cur = nodes.at(queue[head++]);
 				subN.add(cur);
-				counter++;
 
 				for(Node nhb: cur.getNeighbours()){
-					if(nhb.getDist() == INF){
-						nhb.setDist(cur.getDist()+1);
-						nhb.setParent(cur);
-						queue.offer(nhb);
+					if(!reached[nhb.index]){
+						reached[nhb.index] = true;
+						queue[tail++] = nhb.index;
 					}
 				}
 			}
 			subNodes.add(subN);				//Add to Collection of SubNodes
 		}
+		indexComponents();
 	}
 
-	/**Gets a Node that is disconnected from the graph
-	 *
-	 * @return Node - disconnected Node to be processed*/
-	public Node getNewNode() {
-
-		Node node = null;
-
-		Set<Node> tmpNodes = new HashSet<Node>();
-		for(Node n : nodes.values())
-			tmpNodes.add(n);						//Copy Set of Nodes
-
-		if(subNodes.size() == 0)
-			node = nodes.get(14392);				//Arbitrary Start Node
-		else if(subNodes.size() > 0){
-			for(List<Node> col : subNodes)
-				tmpNodes.removeAll(col);			//Difference between subNodes set and full set of Nodes
-		}
-
-		for(Node nb : tmpNodes){
-			node = nb;
-			break;
+	/**Rebuilds the Node -> component lookup from subNodes*/
+	void indexComponents(){
+		componentOf.clear();
+		for(List<Node> component : subNodes){
+			for(Node n : component)
+				componentOf.put(n, component);
 		}
-
-		return node;
 	}
 
 	/**Returns a list of all disconnected Nodes
@@ -222,40 +384,34 @@ public class Graph {
 	 * @return boolean - valid/invalid route*/
 	public boolean checkRoute(Node start, Node end){
 
-		boolean valid = false;
-
-		for(List<Node> list : subNodes){
-			if(list.contains(start) && list.contains(end))		//Check if both Nodes are in one component of the graph, I.e. NOT DISCONNECTED
-				valid = true;
-		}
+		List<Node> component = componentOf.get(start);
 
-		return valid;
+		return component != null && component == componentOf.get(end);		//Check if both Nodes are in one component of the graph, I.e. NOT DISCONNECTED
 	}
 
 	/**Highlights Road based on Sequence of Segments within that Road*/
 	public void highlightRoads(List<Road> selectRoads){
 
 		highlightedSegments = new ArrayList<Segment>();
+		RoadNameIndex index = getRoadNameIndex();
+		Set<Integer> names = new HashSet<Integer>();
 
 		for(Road r : selectRoads){
+			if(!names.add(r.nameID))						//Already highlighted through a Road with the same name
+				continue;
 
-			for(Road rd : r.getAllRoads(roads)){			//For each Road, get All Roads assoc. to it
-
-				for(Segment s : rd.components){
-					highlightedSegments.add(s);
-				}
+			for(Road rd : index.withName(r.nameID)){		//For each Road, get All Roads assoc. to it
+				highlightedSegments.addAll(rd.components);
 			}
 		}
 	}
-	
+
 	public void highlightRoad(Road r){
-		
+
 		highlightedSegments = new ArrayList<Segment>();
-		
-		for(Road rd : r.getAllRoads(roads)){
-			for(Segment s : rd.components)
-				highlightedSegments.add(s);
-		}
+
+		for(Road rd : getRoadNameIndex().withName(r.nameID))
+			highlightedSegments.addAll(rd.components);
 	}
 
 }
@@ -0,0 +1,443 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies a small change file to a loaded Graph in place, instead of reloading
+ * everything. Each line is tab separated, starts with an operation and a kind,
+ * and then has the same columns as the matching data file:
+ *
+ * <pre>
+ * add|update  node         nodeID lat lon
+ * remove      node         nodeID
+ * add|update  road         roadid type label city oneway speed roadclass notforcar notforpede notforbicy
+ * remove      road         roadid
+ * add|update  segment      roadID length nodeID1 nodeID2 coords...
+ * remove      segment      roadID nodeID1 nodeID2
+ * add|remove  restriction  nodeID-1 roadID-1 nodeID roadID-2 nodeID-2
+ * </pre>
+ *
+ * Blank lines and lines starting with # are ignored. Removing a node or road
+ * also removes its segments and restrictions. Updating a segment finds it by
+ * road and end nodes and changes its length, and its points if any are given,
+ * in place. Neighbour lists, Road components, connected components and the
+ * NodeIndex are kept up to date. Whether removed segments split a component
+ * is checked once, after the last line, so a delta walks each component it
+ * may have cut at most once (see splitComponents).
+ *
+ * A delta that only changes segment lengths or road speeds patches the arc
+ * weights of the CsrGraph in place. Any other change to nodes, arcs or
+ * restrictions drops the CsrGraph (with its TurnRestrictions and TurnGraph)
+ * and the next search rebuilds it from every Node, about 55ms on a 100k node
+ * graph, which is most of the cost of such a delta. The RoadNameIndex is
+ * rebuilt by the next lookup after a Road change.
+ *
+ * Lines are applied in order and the first bad line throws, leaving the
+ * earlier lines applied.
+ */
+public class GraphDelta {
+
+	/**Nodes a search walks from one end of a removed Segment looking for the other before the component is relabelled*/
+	private static final int SPLIT_PROBE = 256;
+
+	private final Graph graph;
+	private int lineNo;
+	private final List<Node> cut = new ArrayList<Node>();		//Ends of removed Segments, in pairs, not yet checked
+	private boolean batch;										//Applying a file, components are fixed once at the end
+
+	public GraphDelta(Graph graph) {
+		this.graph = graph;
+	}
+
+	/**Applies every line of the given delta file
+	 *
+	 * @return int - number of changes applied*/
+	public int apply(File delta) throws IOException {
+		int changes = 0;
+		lineNo = 0;
+		batch = true;
+
+		try (BufferedReader br = new BufferedReader(new FileReader(delta))) {
+			String line;
+			while ((line = br.readLine()) != null) {
+				lineNo++;
+				if (line.trim().isEmpty() || line.startsWith("#"))
+					continue;
+
+				try {
+					apply(line.split("[\t]+"));
+				} catch (ArrayIndexOutOfBoundsException e) {
+					fail("missing columns");
+				}
+				changes++;
+			}
+		} finally {
+			batch = false;
+			splitComponents();								//Also for the lines applied before a bad one
+		}
+		return changes;
+	}
+
+	private void apply(String[] t) {
+		String op = t[0], kind = t[1];
+
+		switch (kind) {
+		case "node":
+			if (op.equals("add"))
+				addNode(asInt(t[2]), asDouble(t[3]), asDouble(t[4]));
+			else if (op.equals("update"))
+				moveNode(node(t[2]), asDouble(t[3]), asDouble(t[4]));
+			else if (op.equals("remove"))
+				removeNode(node(t[2]));
+			else
+				fail("unknown operation " + op);
+			break;
+
+		case "road":
+			if (op.equals("add")) {
+				Road road = new Road(graph, asInt(t[2]), asInt(t[3]), t[4], t[5], asInt(t[6]), asInt(t[7]),
+						asInt(t[8]), asInt(t[9]), asInt(t[10]), asInt(t[11]));
+				if (graph.roads.containsKey(road.roadID))
+					fail("road " + road.roadID + " already exists");
+				graph.roads.put(road.roadID, road);
+				graph.invalidateRoadNames();
+			} else if (op.equals("update")) {
+				Road road = road(t[2]);
+				road.rename(graph, t[4], t[5]);
+				graph.invalidateRoadNames();
+				if (road.oneWay != asInt(t[6])) {
+					for (Segment s : road.components)
+						Parser.removeNeighbours(s);
+					road.oneWay = asInt(t[6]);
+					for (Segment s : road.components)
+						Parser.addNeighbours(s);				//Turned one-way or back, redo its arcs
+					graph.invalidateCsr();
+				}
+				road.speed = asInt(t[7]);
+				road.roadClass = asInt(t[8]);
+				for (Segment s : road.components)
+					graph.reweigh(s);							//Travel times, nothing if the arcs are being rebuilt
+			} else if (op.equals("remove"))
+				removeRoad(road(t[2]));
+			else
+				fail("unknown operation " + op);
+			break;
+
+		case "segment":
+			if (op.equals("add"))
+				addSegment(road(t[2]), asDouble(t[3]), node(t[4]), node(t[5]), coords(t));
+			else if (op.equals("update"))
+				updateSegment(segment(road(t[2]), node(t[4]), node(t[5])), asDouble(t[3]), coords(t));
+			else if (op.equals("remove"))
+				removeSegment(segment(road(t[2]), node(t[3]), node(t[4])));
+			else
+				fail("unknown operation " + op);
+			break;
+
+		case "restriction":
+			Node n1 = node(t[2]), n = node(t[4]), n2 = node(t[6]);
+			Road r1 = road(t[3]), r2 = road(t[5]);
+			if (op.equals("add")) {
+				Restriction restriction = new Restriction(n1, r1, n, r2, n2);
+				graph.restrictions.add(restriction);
+				n.getRestrictions().add(restriction);
+				graph.invalidateCsr();
+			} else if (op.equals("remove")) {
+				for (Restriction r : new ArrayList<Restriction>(n.getRestrictions())) {
+					if (r.getN1() == n1 && r.getR1() == r1 && r.getR2() == r2 && r.getN2() == n2)
+						removeRestriction(r);
+				}
+			} else
+				fail("unknown operation " + op);
+			break;
+
+		default:
+			fail("unknown kind " + kind);
+		}
+	}
+
+	//===========================NODES=============================
+
+	public Node addNode(int nodeID, double lat, double lon) {
+		if (graph.nodes.containsKey(nodeID))
+			fail("node " + nodeID + " already exists");
+
+		Node node = new Node(nodeID, graph.coords);
+		graph.nodes.put(nodeID, node);
+		graph.coords.setNodeLatLon(node.index, lat, lon);
+
+		List<Node> component = new ArrayList<Node>();		//On its own until a segment joins it
+		component.add(node);
+		graph.subNodes.add(component);
+		graph.componentOf.put(node, component);
+
+		graph.invalidateNodeIndex();
+		graph.invalidateCsr();
+		return node;
+	}
+
+	public void moveNode(Node node, double lat, double lon) {
+		graph.coords.setNodeLatLon(node.index, lat, lon);
+		graph.invalidateNodeIndex();
+		graph.invalidateCsr();
+	}
+
+	public void removeNode(Node node) {
+		Set<Node> neighbours = new LinkedHashSet<Node>();
+		for (Segment s : new ArrayList<Segment>(node.segments)) {
+			neighbours.add(s.start == node ? s.end : s.start);
+			cut(s);
+		}
+		neighbours.remove(node);
+		Node first = neighbours.isEmpty() ? null : neighbours.iterator().next();
+		for (Node n : neighbours) {
+			if (n != first) {
+				cut.add(first);								//Only connected through this Node, perhaps
+				cut.add(n);
+			}
+		}
+		for (Restriction r : new ArrayList<Restriction>(graph.restrictions)) {
+			if (r.getN1() == node || r.getN() == node || r.getN2() == node)
+				removeRestriction(r);
+		}
+
+		List<Node> component = graph.componentOf.remove(node);		//It has no Segments left, take it out on its own
+		component.remove(node);
+		if (component.isEmpty())
+			graph.subNodes.remove(component);
+		int index = node.getIndex(), last = graph.nodes.size() - 1;
+		graph.nodes.remove(node.nodeID);
+		if (index != last)
+			graph.coords.moveNode(last, index);				//The last Node took its index
+		graph.invalidateNodeIndex();
+		graph.invalidateCsr();
+		settle();
+	}
+
+	//===========================ROADS=============================
+
+	public void removeRoad(Road road) {
+		for (Segment s : new ArrayList<Segment>(road.components))
+			cut(s);
+		for (Restriction r : new ArrayList<Restriction>(graph.restrictions)) {
+			if (r.getR1() == road || r.getR2() == road)
+				removeRestriction(r);
+		}
+		graph.roads.remove(road.roadID);
+		graph.invalidateRoadNames();
+		settle();
+	}
+
+	//===========================SEGMENTS==========================
+
+	public Segment addSegment(Road road, double length, Node start, Node end, double[] coords) {
+		Segment segment = new Segment(road, start, end, length, graph.coords.addLatLon(coords, coords.length), coords.length / 2);
+		segment.link();
+		Parser.addNeighbours(segment);
+		graph.segments.add(segment);
+
+		start.invalidateNeighbours();
+		end.invalidateNeighbours();
+		graph.invalidateCsr();
+
+		List<Node> a = graph.componentOf.get(start), b = graph.componentOf.get(end);
+		if (a != b) {
+			List<Node> small = a.size() < b.size() ? a : b;		//Merge the smaller component into the larger
+			List<Node> large = small == a ? b : a;
+			for (Node n : small)
+				graph.componentOf.put(n, large);
+			large.addAll(small);
+			graph.subNodes.remove(small);
+		}
+		return segment;
+	}
+
+	/**Changes a Segment's length, and its points if any are given, in place.
+	 * Its arcs stay where they are, only their lengths and times are recomputed.
+	 * The old points are left unused in the Coordinates, as after removeSegment.*/
+	public void updateSegment(Segment segment, double length, double[] coords) {
+		int first = segment.firstPoint, count = segment.pointCount;
+		if (coords.length > 0) {
+			first = graph.coords.addLatLon(coords, coords.length);
+			count = coords.length / 2;
+		}
+		segment.reshape(length, first, count);
+		graph.reweigh(segment);
+	}
+
+	public void removeSegment(Segment segment) {
+		cut(segment);
+		settle();
+	}
+
+	/**Removes a Segment, leaving the component check for splitComponents*/
+	private void cut(Segment segment) {
+		segment.unlink();
+		Parser.removeNeighbours(segment);
+		graph.segments.remove(segment);
+
+		segment.start.invalidateNeighbours();
+		segment.end.invalidateNeighbours();
+		graph.invalidateCsr();
+
+		cut.add(segment.start);
+		cut.add(segment.end);
+	}
+
+	/**Fixes the components now, unless a whole file is being applied*/
+	private void settle() {
+		if (!batch)
+			splitComponents();
+	}
+
+	/**Checks that the ends of every Segment removed since the last check are
+	 * still connected. A pair found within SPLIT_PROBE Nodes of each other
+	 * is; each component left with a pair that isn't is relabelled with one
+	 * walk over it, however many Segments were removed from it.*/
+	private void splitComponents() {
+		Set<List<Node>> broken = Collections.newSetFromMap(new IdentityHashMap<List<Node>, Boolean>());
+		for (int i = 0; i < cut.size(); i += 2) {
+			Node a = cut.get(i), b = cut.get(i + 1);
+			List<Node> component = graph.componentOf.get(a);
+			if (component == null || component != graph.componentOf.get(b) || broken.contains(component))
+				continue;									//A Node was removed, or it is relabelled anyway
+			if (!near(a, b))
+				broken.add(component);
+		}
+		cut.clear();
+		for (List<Node> component : broken)
+			relabel(component);
+	}
+
+	/**Returns true if b is within SPLIT_PROBE Nodes of a, ignoring one-way roads*/
+	private static boolean near(Node a, Node b) {
+		if (a == b)
+			return true;
+
+		Set<Node> reached = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+		Deque<Node> queue = new ArrayDeque<Node>();
+		reached.add(a);
+		queue.add(a);
+
+		while (!queue.isEmpty() && reached.size() < SPLIT_PROBE) {
+			Node cur = queue.poll();
+			for (Segment s : cur.segments) {
+				Node next = s.start == cur ? s.end : s.start;
+				if (next == b)
+					return true;
+				if (reached.add(next))
+					queue.add(next);
+			}
+		}
+		return false;
+	}
+
+	/**Splits a component into the pieces that are still connected, the first
+	 * piece keeps the old list*/
+	private void relabel(List<Node> old) {
+		Set<Node> reached = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+		List<List<Node>> pieces = new ArrayList<List<Node>>();
+
+		for (Node start : old) {
+			if (!reached.add(start))
+				continue;
+			List<Node> piece = new ArrayList<Node>();			//Doubles as the queue
+			piece.add(start);
+			for (int q = 0; q < piece.size(); q++) {
+				Node cur = piece.get(q);
+				for (Segment s : cur.segments) {
+					Node next = s.start == cur ? s.end : s.start;
+					if (reached.add(next))
+						piece.add(next);
+				}
+			}
+			pieces.add(piece);
+		}
+		if (pieces.size() == 1)
+			return;
+
+		old.clear();
+		old.addAll(pieces.get(0));
+		for (List<Node> piece : pieces.subList(1, pieces.size())) {
+			graph.subNodes.add(piece);
+			for (Node n : piece)
+				graph.componentOf.put(n, piece);
+		}
+	}
+
+	//===========================RESTRICTIONS======================
+
+	public void removeRestriction(Restriction r) {
+		graph.restrictions.remove(r);
+		r.getN().getRestrictions().remove(r);
+		graph.invalidateCsr();
+	}
+
+	//===========================LOOKUPS===========================
+
+	private Node node(String id) {
+		Node node = graph.nodes.get(asInt(id));
+		if (node == null)
+			fail("unknown node " + id);
+		return node;
+	}
+
+	private Road road(String id) {
+		Road road = graph.roads.get(asInt(id));
+		if (road == null)
+			fail("unknown road " + id);
+		return road;
+	}
+
+	private Segment segment(Road road, Node start, Node end) {
+		Segment reversed = null;
+		for (Segment s : start.segments) {
+			if (s.road == road && s.start == start && s.end == end)
+				return s;
+			if (s.road == road && s.start == end && s.end == start)
+				reversed = s;
+		}
+		if (reversed == null)
+			fail("no segment of road " + road.roadID + " between " + start.nodeID + " and " + end.nodeID);
+		return reversed;
+	}
+
+	/**Returns the coordinates after the first six columns of a segment line*/
+	private double[] coords(String[] t) {
+		double[] coords = new double[Math.max(0, t.length - 6)];
+		for (int i = 6; i < t.length; i++)
+			coords[i - 6] = asDouble(t[i]);
+		return coords;
+	}
+
+	private int asInt(String str) {
+		try {
+			return Integer.parseInt(str);
+		} catch (NumberFormatException e) {
+			fail("bad number " + str);
+			return 0;
+		}
+	}
+
+	private double asDouble(String str) {
+		try {
+			return Double.parseDouble(str);
+		} catch (NumberFormatException e) {
+			fail("bad number " + str);
+			return 0;
+		}
+	}
+
+	private void fail(String message) {
+		throw new IllegalArgumentException("delta line " + lineNo + ": " + message);
+	}
+}
@@ -0,0 +1,293 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Draws a Graph (Segments, Polygons, Nodes and the highlights) onto a Swing
+ * Graphics. All the java.awt code lives here and in the GUI classes, so the
+ * Graph can be loaded and searched without AWT (see MapEngine).
+ */
+public class GraphRenderer {
+
+	private final Map<String, Color> polygonColours = new HashMap<String, Color>();		//Polygon type -> fill
+
+	public void draw(Graph graph, Graphics g, Dimension screen, Location origin, double scale) {
+		// a compatibility wart on swing is that it has to give out Graphics
+		// objects, but Graphics2D objects are nicer to work with. Luckily
+		// they're a subclass, and swing always gives them out anyway, so we can
+		// just do this.
+		Graphics2D g2 = (Graphics2D) g;
+
+		// draw all the segments.
+		g2.setColor(Mapper.SEGMENT_COLOUR);
+		for (Segment s : graph.segments){
+			drawSegment(s, g2, origin, scale);
+		}
+
+		//Draw Polygons
+		List<Polygon> shown = graph.polygons;
+		PolygonIndex polygonIndex = graph.getPolygonIndex();
+		if (polygonIndex != null)						//Lazy - only decode what is on screen
+			shown = polygonIndex.visible(origin.x, origin.y - screen.height / scale,
+					origin.x + screen.width / scale, origin.y);
+		for (Polygon pol : shown)
+			drawPolygon(pol, g2, screen, origin, scale);
+
+		//Draw Highlighted Segments
+		g2.setColor(Mapper.HIGHLIGHT_COLOUR);
+		g2.setStroke(new BasicStroke(3));
+		if(graph.highlightedSegments!=null){
+			for (Segment seg : graph.highlightedSegments)
+				drawSegment(seg, g2, origin, scale);
+		}
+
+		// draw all the nodes.
+		g2.setColor(Mapper.NODE_COLOUR);
+		for (Node n : graph.nodes.values())
+			drawNode(n, g2, screen, origin, scale);
+
+		if(graph.startNode!=null){
+			g2.setColor(Color.GREEN);								//Highlight Start and End Nodes
+			drawNode(graph.startNode, g2, screen, origin, scale);
+		}
+		if(graph.endNode!=null){
+			g2.setColor(Color.RED);
+			drawNode(graph.endNode, g2, screen, origin, scale);
+		}
+		if(graph.articulationPoints != null){
+			g2.setColor(Color.GREEN);
+			for(Node n : graph.articulationPoints)
+				drawNode(n, g2, screen, origin, scale);					//Highlight Articulation Points
+		}
+	}
+
+	public void drawNode(Node node, Graphics g, Dimension area, Location origin, double scale) {
+		Point p = Location.asPoint(node.x(), node.y(), origin, scale);
+
+		// for efficiency, don't render nodes that are off-screen.
+		if (p.x < 0 || p.x > area.width || p.y < 0 || p.y > area.height)
+			return;
+
+		int size = (int) (Mapper.NODE_GRADIENT * Math.log(scale) + Mapper.NODE_INTERCEPT);
+		g.fillRect(p.x - size / 2, p.y - size / 2, size, size);
+	}
+
+	public void drawSegment(Segment segment, Graphics g, Location origin, double scale) {
+		Coordinates coords = segment.start.coords;
+		int first = segment.firstPoint, end = first + segment.pointCount;
+		if (first >= end)
+			return;
+
+		Point p = Location.asPoint(coords.pointX(first), coords.pointY(first), origin, scale);
+		for (int i = first + 1; i < end; i++) {
+			Point q = Location.asPoint(coords.pointX(i), coords.pointY(i), origin, scale);
+			g.drawLine(p.x, p.y, q.x, q.y);
+			p = q;
+		}
+	}
+
+	public void drawPolygon(Polygon polygon, Graphics2D g2, Dimension area, Location origin, double scale){
+
+		int size = (int) (Mapper.NODE_GRADIENT * Math.log(scale) + Mapper.NODE_INTERCEPT);
+
+		Color color = polygonColour(polygon.getType());
+		for(double[] ring : polygon.getRings()){
+
+			int count = ring.length / 2;
+			int[] xPos = new int[count];
+			int[] yPos = new int[count];
+
+			for(int i = 0; i < count; i++){
+
+				int px = (int) ((ring[2 * i] - origin.x) * scale);
+				int py = (int) ((origin.y - ring[2 * i + 1]) * scale);
+
+				// for efficiency, don't render nodes that are off-screen.
+				if (px < 0 || px > area.width || py < 0 || py > area.height)
+					return;
+
+				xPos[i] = px - (size / 2);
+				yPos[i] = py - (size / 2);				//Split Data into X and Y array of Coordinates
+			}
+
+			g2.setColor(color);
+			g2.fillPolygon(xPos, yPos, count);
+		}
+	}
+
+	/**Returns the fill for a Polygon type, the Colors are shared by all Polygons of a type*/
+	private Color polygonColour(String type) {
+		if (!polygonColours.containsKey(type))
+			polygonColours.put(type, colorIdentifier(type));
+		return polygonColours.get(type);
+	}
+
+	private static Color colorIdentifier(String type) {
+
+		Color color = null;
+
+		switch(type){
+		case "0x01":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x02":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x03":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x04":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x05":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x06":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x07":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x08":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x09":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x0a":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x0b":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x0c":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x0d":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x0e":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x13":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x14":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x15":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x16":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x17":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x18":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x19":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x1a":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x1e":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x1f":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x20":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x28":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x29":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x32":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x3b":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x3c":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x3d":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x3e":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x3f":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x40":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x41":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x42":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x43":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x44":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x45":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x46":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x47":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x48":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x49":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x4c":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x4d":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x4e":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x4f":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x50":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x51":
+			color = new Color(Integer.decode(type));;
+			break;
+		case "0x52":
+			color = new Color(Integer.decode(type));
+			break;
+		case "0x53":
+			color = new Color(Integer.decode(type));
+			break;
+		}
+
+		return color;
+	}
+}
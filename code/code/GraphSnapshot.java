@@ -0,0 +1,360 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Writes a fully built Graph to a compact binary file and restores it again,
+ * so the text files only have to be parsed (and the traffic lights matched)
+ * once per data set.
+ *
+ * The file starts with a magic number, a format version and a checksum of the
+ * source files it was built from. If any of those don't match, read returns
+ * null and the caller should rebuild the Graph and write a new snapshot.
+ *
+ * Numeric data is stored in columns (all node ids, then all x coordinates,
+ * ...) so it can be restored with bulk reads.
+ */
+public class GraphSnapshot {
+
+	public static final String FILENAME = "graph.snapshot";
+
+	private static final int MAGIC = 0x41525347;		//"ARSG"
+	private static final int VERSION = 2;
+	private static final int NONE = -1;					//Written in place of a missing Node/Road/String
+
+	/**Computes a checksum over the name, size and contents of each source
+	 * file: a CRC32 and a CRC32C of the same bytes, one in each half. Every
+	 * byte is read through a mapping, about 20ms for 20MB of data. Timestamps
+	 * aren't used, so a file edited and then restored (or copied with its old
+	 * time) is caught, and touching a file doesn't force a rebuild. An edit
+	 * is only missed if it leaves both CRCs unchanged. Missing (null) files
+	 * are allowed. Lazily loaded polygons aren't stored, so the polygon mode
+	 * is part of the checksum too.*/
+	public static long checksum(File... sources) throws IOException {
+		CRC32 crc = new CRC32();
+		CRC32C crcC = new CRC32C();
+		ByteBuffer buf = ByteBuffer.allocate(8);
+
+		crc.update(Graph.LAZY_POLYGONS ? 1 : 0);
+		crcC.update(Graph.LAZY_POLYGONS ? 1 : 0);
+
+		for (File f : sources) {
+			buf.clear();
+			if (f != null && f.exists()) {
+				byte[] name = f.getName().getBytes(StandardCharsets.UTF_8);
+				crc.update(name);
+				crcC.update(name);
+				ByteBuffer contents = TabScanner.mapFile(f);
+				crc.update(contents.duplicate());
+				crcC.update(contents);
+				buf.putLong(f.length());
+			} else
+				buf.putLong(NONE);
+			crc.update(buf.array(), 0, 8);
+			crcC.update(buf.array(), 0, 8);
+		}
+		return crc.getValue() << 32 | crcC.getValue();
+	}
+
+	/**Writes the Graph to the given file
+	 *
+	 * @param long checksum - checksum of the source files, see checksum(File...)*/
+	public static void write(Graph graph, File file, long checksum) throws IOException {
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(checksum);
+
+			//===========================NODES=============================
+			List<Node> nodes = new ArrayList<Node>(graph.nodes.values());
+			out.writeInt(nodes.size());
+			for (Node n : nodes)
+				out.writeInt(n.nodeID);
+			for (Node n : nodes)
+				out.writeDouble(n.x());
+			for (Node n : nodes)
+				out.writeDouble(n.y());
+			for (Node n : nodes)
+				out.writeByte(n.hasLights ? 1 : 0);
+
+			//===========================ROADS=============================
+			writeSymbols(out, graph.roadNames);			//Each name and city once, the Roads refer to them by id
+			writeSymbols(out, graph.cities);
+
+			out.writeInt(graph.roads.size());
+			for (Road r : graph.roads.values()) {
+				out.writeInt(r.roadID);
+				out.writeInt(r.oneWay);
+				out.writeInt(r.speed);
+				out.writeInt(r.roadClass);
+				out.writeInt(r.nameID);
+				out.writeInt(r.cityID);
+			}
+
+			//===========================SEGMENTS==========================
+			List<Segment> segments = new ArrayList<Segment>(graph.segments);
+			out.writeInt(segments.size());
+			for (Segment s : segments)
+				out.writeInt(s.road.roadID);
+			for (Segment s : segments)
+				out.writeInt(s.start.nodeID);
+			for (Segment s : segments)
+				out.writeInt(s.end.nodeID);
+			for (Segment s : segments)
+				out.writeDouble(s.length);
+			for (Segment s : segments)
+				out.writeInt(s.pointCount);
+			for (Segment s : segments) {
+				for (int p = s.firstPoint; p < s.firstPoint + s.pointCount; p++) {
+					out.writeDouble(graph.coords.pointX(p));
+					out.writeDouble(graph.coords.pointY(p));
+				}
+			}
+
+			//===========================RESTRICTIONS======================
+			out.writeInt(graph.restrictions.size());
+			for (Restriction r : graph.restrictions) {
+				out.writeInt(r.getN1() == null ? NONE : r.getN1().nodeID);
+				out.writeInt(r.getR1() == null ? NONE : r.getR1().roadID);
+				out.writeInt(r.getN() == null ? NONE : r.getN().nodeID);
+				out.writeInt(r.getR2() == null ? NONE : r.getR2().roadID);
+				out.writeInt(r.getN2() == null ? NONE : r.getN2().nodeID);
+			}
+
+			//===========================POLYGONS==========================
+			out.writeInt(graph.polygons.size());
+			for (Polygon p : graph.polygons) {
+				writeString(out, p.getType());
+				writeString(out, p.getLabel());
+				out.writeInt(p.getEndLevel());
+				out.writeInt(p.getCityIdx());
+
+				double[][] rings = p.getRings();
+				out.writeInt(rings.length);
+				for (double[] ring : rings) {
+					out.writeInt(ring.length / 2);
+					for (double v : ring)
+						out.writeDouble(v);
+				}
+			}
+
+			//===========================COMPONENTS========================
+			out.writeInt(graph.subNodes.size());
+			for (List<Node> component : graph.subNodes) {
+				out.writeInt(component.size());
+				for (Node n : component)
+					out.writeInt(n.nodeID);
+			}
+		}
+	}
+
+	/**Restores a Graph from the given file
+	 *
+	 * @param long checksum - checksum of the source files, see checksum(File...)
+	 * @return Graph - the restored Graph, or null if the file is missing, from another version or stale*/
+	public static Graph read(File file, long checksum) throws IOException {
+
+		if (file == null || !file.exists())
+			return null;
+
+		ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));		//Read fully rather than map, so a stale file can be overwritten
+		if (in.remaining() < 16 || in.getInt() != MAGIC || in.getInt() != VERSION || in.getLong() != checksum)
+			return null;
+
+		Graph graph = new Graph();
+
+		//===========================NODES=============================
+		int nodeCount = in.getInt();
+		int[] ids = readInts(in, nodeCount);
+		double[] xs = readDoubles(in, nodeCount);
+		double[] ys = readDoubles(in, nodeCount);
+
+		IdTable<Node> nodes = new IdTable<Node>(nodeCount);		//Written in index order, so the indices come back the same
+		for (int i = 0; i < nodeCount; i++) {
+			Node node = new Node(ids[i], graph.coords);
+			node.setHasLights(in.get() != 0);
+			nodes.put(ids[i], node);
+			graph.coords.setNode(node.index, xs[i], ys[i]);
+		}
+		graph.nodes = nodes;
+
+		//===========================ROADS=============================
+		readSymbols(in, graph.roadNames);
+		readSymbols(in, graph.cities);
+
+		int roadCount = in.getInt();
+		graph.roads = new IdTable<Road>(roadCount);
+		for (int i = 0; i < roadCount; i++) {
+			int roadID = in.getInt();
+			int oneWay = in.getInt();
+			int speed = in.getInt();
+			int roadClass = in.getInt();
+			String name = graph.roadNames.get(in.getInt());
+			String city = graph.cities.get(in.getInt());
+
+			graph.roads.put(roadID, new Road(graph, roadID, 0, name, city, oneWay, speed, roadClass, 0, 0, 0));
+		}
+
+		//===========================SEGMENTS==========================
+		int segCount = in.getInt();
+		graph.segments = new DenseList<Segment>(segCount);
+		int[] roadIDs = readInts(in, segCount);
+		int[] startIDs = readInts(in, segCount);
+		int[] endIDs = readInts(in, segCount);
+		double[] lengths = readDoubles(in, segCount);
+		int[] pointCounts = readInts(in, segCount);
+
+		int total = 0;
+		for (int c : pointCounts)
+			total += c;
+		graph.coords.setPoints(readDoubles(in, total * 2), total);		//Already packed the way Coordinates keeps them
+
+		int first = 0;
+		for (int i = 0; i < segCount; i++) {
+			Segment segment = new Segment(graph.roads.get(roadIDs[i]), nodes.get(startIDs[i]),
+					nodes.get(endIDs[i]), lengths[i], first, pointCounts[i]);
+			first += pointCounts[i];
+			segment.link();
+			Parser.addNeighbours(segment);
+			graph.segments.add(segment);
+		}
+
+		//===========================RESTRICTIONS======================
+		int restCount = in.getInt();
+		int[] rest = readInts(in, restCount * 5);
+		for (int i = 0; i < rest.length; i += 5) {
+			Restriction restriction = new Restriction(nodes.get(rest[i]), graph.roads.get(rest[i + 1]),
+					nodes.get(rest[i + 2]), graph.roads.get(rest[i + 3]), nodes.get(rest[i + 4]));
+			graph.restrictions.add(restriction);
+			restriction.getN().getRestrictions().add(restriction);
+		}
+
+		//===========================POLYGONS==========================
+		int polyCount = in.getInt();
+		for (int i = 0; i < polyCount; i++) {
+			String type = readString(in);
+			String label = readString(in);
+			int endLevel = in.getInt();
+			int cityIdx = in.getInt();
+
+			double[][] rings = new double[in.getInt()][];
+			for (int r = 0; r < rings.length; r++)
+				rings[r] = readDoubles(in, in.getInt() * 2);
+
+			graph.polygons.add(new Polygon(type, label, endLevel, cityIdx, rings));
+		}
+
+		//===========================COMPONENTS========================
+		int compCount = in.getInt();
+		for (int i = 0; i < compCount; i++) {
+			int[] members = readInts(in, in.getInt());
+			List<Node> component = new ArrayList<Node>(members.length);
+			for (int id : members)
+				component.add(nodes.get(id));
+			graph.subNodes.add(component);
+		}
+		graph.indexComponents();
+
+		return graph;
+	}
+
+	private static int[] readInts(ByteBuffer in, int count) {
+		int[] values = new int[count];
+		in.asIntBuffer().get(values);
+		in.position(in.position() + count * 4);
+		return values;
+	}
+
+	private static double[] readDoubles(ByteBuffer in, int count) {
+		double[] values = new double[count];
+		in.asDoubleBuffer().get(values);
+		in.position(in.position() + count * 8);
+		return values;
+	}
+
+	private static void writeSymbols(DataOutputStream out, SymbolTable symbols) throws IOException {
+		out.writeInt(symbols.size());
+		for (int i = 0; i < symbols.size(); i++)
+			writeString(out, symbols.get(i));
+	}
+
+	/**Interns the Strings back in id order, so they get the same ids as before*/
+	private static void readSymbols(ByteBuffer in, SymbolTable symbols) {
+		int count = in.getInt();
+		for (int i = 0; i < count; i++)
+			symbols.intern(readString(in));
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(NONE);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer in) {
+		int len = in.getInt();
+		if (len == NONE)
+			return null;
+
+		byte[] bytes = new byte[len];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**Compiles the data files in the given directory into a snapshot next to them
+	 *
+	 * Usage: java GraphSnapshot <data directory>*/
+	public static void main(String[] args) throws IOException {
+
+		if (args.length != 1) {
+			System.out.println("Usage: java GraphSnapshot <data directory>");
+			return;
+		}
+
+		File dir = new File(args[0]);
+		File[] sources = sourceFiles(dir);
+		long checksum = checksum(sources);
+
+		Graph graph = new Graph(sources[0], sources[1], sources[2], sources[3], sources[4], sources[5]);
+		LoadProfile profile = graph.getProfile();
+
+		File file = new File(dir, FILENAME);
+		profile.measure("write snapshot", () -> {
+			write(graph, file, checksum);
+			return null;
+		});
+		profile.measure("read snapshot", () -> read(file, checksum));
+
+		System.out.println("Snapshot is " + file.length() + " bytes");
+		profile.report();
+	}
+
+	/**Returns the six data files in the order the Graph constructor takes them,
+	 * with null for the optional ones that are missing*/
+	public static File[] sourceFiles(File dir) {
+		String[] names = { GUI.NODES_FILENAME, GUI.ROADS_FILENAME, GUI.SEGS_FILENAME,
+				GUI.POLYS_FILENAME, GUI.REST_FILENAME, GUI.TRAFFIC_FILENAME };
+
+		File[] files = new File[names.length];
+		for (int i = 0; i < names.length; i++) {
+			File f = new File(dir, names[i]);
+			files[i] = f.exists() ? f : null;
+		}
+		return files;
+	}
+}
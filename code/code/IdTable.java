@@ -0,0 +1,101 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Holds the Nodes (or Roads) of a Graph under dense indices 0..size-1, with
+ * the translation to and from the sparse ids in the data files. The loader
+ * numbers elements in the order they are read; lookups by file id (a node id
+ * typed by the user, the ids in the segments file) go through an IntIntMap so
+ * nothing is boxed, and everything after loading can work on the indices.
+ *
+ * Removal moves the last element into the gap, see DenseList.
+ *
+ * Not thread safe, each table is filled by one load step.
+ */
+public class IdTable<T extends DenseList.Indexed> {
+
+	private final DenseList<T> items;
+	private final Collection<T> view;
+	private final IntIntMap indices;			//File id -> index
+	private int[] ids;							//Index -> file id
+
+	public IdTable() {
+		this(16);
+	}
+
+	/**@param int expected - number of elements to make room for*/
+	public IdTable(int expected) {
+		this.items = new DenseList<T>(expected);
+		this.view = Collections.unmodifiableCollection(items);
+		this.indices = new IntIntMap(expected);
+		this.ids = new int[Math.max(expected, 4)];
+	}
+
+	/**Returns the element with the given file id, or null*/
+	public T get(int id) {
+		int index = indices.get(id);
+		return index == IntIntMap.MISSING ? null : items.get(index);
+	}
+
+	/**Returns the dense index of the given file id, or -1*/
+	public int indexOf(int id) {
+		return indices.get(id);
+	}
+
+	/**Returns the element with the given dense index*/
+	public T at(int index) {
+		return items.get(index);
+	}
+
+	/**Returns the file id of the element with the given dense index*/
+	public int idAt(int index) {
+		if (index >= items.size())
+			throw new IndexOutOfBoundsException(index + " of " + items.size());
+		return ids[index];
+	}
+
+	public boolean containsKey(int id) {
+		return indices.containsKey(id);
+	}
+
+	/**Adds the element under the given file id, replacing (and keeping the index of) any element already there*/
+	public void put(int id, T item) {
+		int index = indices.get(id);
+		if (index != IntIntMap.MISSING) {
+			items.set(index, item);
+			return;
+		}
+		index = items.size();
+		if (index == ids.length)
+			ids = Arrays.copyOf(ids, index * 2);
+		ids[index] = id;
+		indices.put(id, index);
+		items.add(item);
+	}
+
+	/**Removes the element with the given file id, moving the last element into its index
+	 *
+	 * @return T - the removed element, or null*/
+	public T remove(int id) {
+		int index = indices.remove(id);
+		if (index == IntIntMap.MISSING)
+			return null;
+
+		int last = items.size() - 1;
+		if (index != last) {
+			ids[index] = ids[last];
+			indices.put(ids[index], index);
+		}
+		return items.removeAt(index);
+	}
+
+	/**Returns the elements in index order, as a live read-only view*/
+	public Collection<T> values() {
+		return view;
+	}
+
+	public int size() {
+		return items.size();
+	}
+}
@@ -0,0 +1,120 @@
+import java.util.Arrays;
+
+/**
+ * A map from int keys to non-negative int values, for looking up dense
+ * indices by file ids (see IdTable) without boxing either side. Open
+ * addressing with linear probing in two parallel arrays; a value of -1 marks
+ * an empty slot, and removal shifts the rest of the probe run back rather
+ * than leaving tombstones.
+ *
+ * Not thread safe.
+ */
+public class IntIntMap {
+
+	public static final int MISSING = -1;
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private int[] keys;
+	private int[] values;
+	private int size, mask;
+
+	public IntIntMap() {
+		this(16);
+	}
+
+	/**@param int expected - number of entries to make room for without resizing*/
+	public IntIntMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(8, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+		allocate(capacity);
+	}
+
+	/**Returns the value for the key, or MISSING*/
+	public int get(int key) {
+		for (int i = slot(key); ; i = (i + 1) & mask) {
+			if (values[i] == MISSING)
+				return MISSING;
+			if (keys[i] == key)
+				return values[i];
+		}
+	}
+
+	public boolean containsKey(int key) {
+		return get(key) != MISSING;
+	}
+
+	/**Sets the value for the key
+	 *
+	 * @return int - the previous value, or MISSING*/
+	public int put(int key, int value) {
+		if (value < 0)
+			throw new IllegalArgumentException("negative value: " + value);
+
+		int i = slot(key);
+		for (; values[i] != MISSING; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				int old = values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size > keys.length * LOAD_FACTOR)
+			rehash(keys.length * 2);
+		return MISSING;
+	}
+
+	/**Removes the key
+	 *
+	 * @return int - its value, or MISSING if it wasn't there*/
+	public int remove(int key) {
+		int i = slot(key);
+		for (; values[i] != MISSING; i = (i + 1) & mask) {
+			if (keys[i] == key)
+				break;
+		}
+		int old = values[i];
+		if (old == MISSING)
+			return MISSING;
+
+		//Move later entries of the run into the gap if that is closer to their home slot
+		for (int j = (i + 1) & mask; values[j] != MISSING; j = (j + 1) & mask) {
+			int home = slot(keys[j]);
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		values[i] = MISSING;
+		size--;
+		return old;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private int slot(int key) {
+		int h = key * 0x9E3779B9;				//Fibonacci hashing, file ids are often sequential
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, MISSING);
+		mask = capacity - 1;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys, oldValues = values;
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != MISSING)
+				put(oldKeys[i], oldValues[i]);
+		}
+	}
+}
@@ -9,6 +9,7 @@ public class IterArtPts {
 	private Stack<StackElement> activationStack;
 	private List<Node> articulationPoints;
 	private Graph graph;
+	private SearchWorkspace ws;						//Depth of each Node, INF until reached
 
 	private final int INF = (int)Double.POSITIVE_INFINITY;
 
@@ -29,18 +30,15 @@ public class IterArtPts {
 		activationStack = new Stack<StackElement>();
 
 		//===========================INTIALIZE=============================
-		for(Node n : graph.nodes.values()){
-			n.setVisited(false);
-			n.setDepth(INF);
-		}
+		ws = SearchWorkspace.forThread(graph.nodes.size());		//Every depth starts at INF
 
 		for(Node start : graph.getDisconnectedNodes()){		//Find All SubGraphs/SubNodes - Deals with Disconnected
 
-			start.setDepth(0);
+			setDepth(start, 0);
 			int numSubTrees = 0;
 
 			for(Node nhb : start.getNeighbours()){			//For each neighbor of the subcomponent Node find the art pts
-				if(nhb.getDepth() == INF){
+				if(getDepth(nhb) == INF){
 					findArtPts(nhb, start);
 					numSubTrees++;
 				}
@@ -75,7 +73,7 @@ public class IterArtPts {
 
 			if (elem.getChildren() == null) {
 
-				node.setDepth(elem.getDepth());
+				setDepth(node, elem.getDepth());
 				elem.setReach(elem.getDepth());
 				elem.setChildren(new PriorityQueue<Node>());
 
@@ -90,10 +88,10 @@ public class IterArtPts {
 
 				child = elem.getChildren().poll();
 
-				if (child.getDepth() < INF)
-					elem.setReach(Math.min(elem.getReach(), child.getDepth()));
+				if (getDepth(child) < INF)
+					elem.setReach(Math.min(elem.getReach(), getDepth(child)));
 				else
-					activationStack.push(new StackElement(child, node.getDepth() + 1, elem)); // CHILDREN
+					activationStack.push(new StackElement(child, getDepth(node) + 1, elem)); // CHILDREN
 																				// TO
 																				// PROCESS
 			}
@@ -111,6 +109,14 @@ public class IterArtPts {
 		}
 	}
 
+	private int getDepth(Node n) {
+		return ws.isReached(n.index) ? ws.depth(n.index) : INF;
+	}
+
+	private void setDepth(Node n, int depth) {
+		ws.setDepth(n.index, depth);
+	}
+
 	public List<Node> getArticulationPoints() {
 		return articulationPoints;
 	}
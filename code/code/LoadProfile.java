@@ -0,0 +1,173 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records where loading time goes: the wall-clock time, CPU time and bytes
+ * allocated by each load phase (parsing, component search, Trie building...).
+ *
+ * Wall time is always recorded. CPU time and allocation come from the
+ * ThreadMXBean and are only read when detailed profiling is on, which is the
+ * default when running headless (-Djava.awt.headless=true) and can be set
+ * either way with -Dmapper.profile=true|false. Each phase costs a few
+ * ThreadMXBean calls, so it is fine to leave on.
+ *
+ * CPU time and allocation are counted for the thread that runs the phase, so
+ * work a phase hands to other threads (the PARALLEL segment chunks) is not
+ * included. Phases that run at the same time each count their own thread.
+ *
+ * The report is printed as a table, and also written as CSV to the file
+ * named by -Dmapper.profile.out if set.
+ */
+public class LoadProfile {
+
+	public static final boolean ENABLED = Boolean.parseBoolean(
+			System.getProperty("mapper.profile", System.getProperty("java.awt.headless", "false")));
+	public static final String OUTPUT = System.getProperty("mapper.profile.out");
+
+	private static final long UNKNOWN = -1;
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final boolean detailed;
+	private final List<Phase> phases = new ArrayList<Phase>();
+
+	public LoadProfile() {
+		this(ENABLED);
+	}
+
+	public LoadProfile(boolean detailed) {
+		this.detailed = detailed;
+	}
+
+	/**A step to be measured, only allowed to throw IOException*/
+	public interface Step<T> {
+		T run() throws IOException;
+	}
+
+	/**One measured phase. CPU time and allocated bytes are -1 if they were not measured.*/
+	public static class Phase {
+		public final String name, thread;
+		public final long wallNanos, cpuNanos, allocatedBytes;
+
+		Phase(String name, String thread, long wallNanos, long cpuNanos, long allocatedBytes) {
+			this.name = name;
+			this.thread = thread;
+			this.wallNanos = wallNanos;
+			this.cpuNanos = cpuNanos;
+			this.allocatedBytes = allocatedBytes;
+		}
+	}
+
+	/**Runs the step on the current thread and records it under the given name*/
+	public <T> T measure(String name, Step<T> step) throws IOException {
+		long cpu = cpuTime(), allocated = allocatedBytes();
+		long start = System.nanoTime();
+		try {
+			return step.run();
+		} finally {
+			long wall = System.nanoTime() - start;
+			add(new Phase(name, Thread.currentThread().getName(), wall,
+					cpu == UNKNOWN ? UNKNOWN : cpuTime() - cpu,
+					allocated == UNKNOWN ? UNKNOWN : allocatedBytes() - allocated));
+		}
+	}
+
+	/**Records a phase covering everything since start (a System.nanoTime value),
+	 * with the CPU time and allocation of all the phases recorded so far*/
+	public void total(String name, long start) {
+		long wall = System.nanoTime() - start;
+		long cpu = 0, allocated = 0;
+
+		synchronized (phases) {
+			for (Phase p : phases) {
+				cpu += Math.max(p.cpuNanos, 0);
+				allocated += Math.max(p.allocatedBytes, 0);
+			}
+		}
+		add(new Phase(name, Thread.currentThread().getName(), wall, detailed ? cpu : UNKNOWN, detailed ? allocated : UNKNOWN));
+	}
+
+	/**Appends the phases of another profile, e.g. the Graph's own load phases*/
+	public void addAll(LoadProfile other) {
+		for (Phase p : other.getPhases())
+			add(p);
+	}
+
+	/**Returns the recorded phases in the order they finished*/
+	public List<Phase> getPhases() {
+		synchronized (phases) {
+			return new ArrayList<Phase>(phases);
+		}
+	}
+
+	public boolean isDetailed() {
+		return detailed;
+	}
+
+	/**Prints the report, and writes it as CSV if -Dmapper.profile.out is set*/
+	public void report() {
+		System.out.print(this);
+		if (OUTPUT != null) {
+			try {
+				writeCsv(new File(OUTPUT));
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**Writes one line per phase: phase,thread,wall_ms,cpu_ms,allocated_bytes.
+	 * Values that were not measured are left empty.*/
+	public void writeCsv(File file) throws IOException {
+		try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+			out.println("phase,thread,wall_ms,cpu_ms,allocated_bytes");
+			for (Phase p : getPhases()) {
+				out.println(p.name + "," + p.thread + "," + millis(p.wallNanos) + ","
+						+ (p.cpuNanos == UNKNOWN ? "" : millis(p.cpuNanos)) + ","
+						+ (p.allocatedBytes == UNKNOWN ? "" : Long.toString(p.allocatedBytes)));
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("Load phases:\n");
+		sb.append(String.format("  %-14s %10s %10s %12s%n", "phase", "wall ms", "cpu ms", "alloc MB"));
+		for (Phase p : getPhases()) {
+			sb.append(String.format("  %-14s %10s %10s %12s%n", p.name, millis(p.wallNanos),
+					p.cpuNanos == UNKNOWN ? "-" : millis(p.cpuNanos),
+					p.allocatedBytes == UNKNOWN ? "-" : String.format("%.1f", p.allocatedBytes / (1024.0 * 1024.0))));
+		}
+		return sb.toString();
+	}
+
+	private void add(Phase phase) {
+		synchronized (phases) {
+			phases.add(phase);
+		}
+	}
+
+	private long cpuTime() {
+		if (!detailed || !THREADS.isCurrentThreadCpuTimeSupported())
+			return UNKNOWN;
+		return THREADS.getCurrentThreadCpuTime();
+	}
+
+	/**Allocation counting is a HotSpot extension, so it may not be there*/
+	private long allocatedBytes() {
+		if (!detailed || !(THREADS instanceof com.sun.management.ThreadMXBean))
+			return UNKNOWN;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+		if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled())
+			return UNKNOWN;
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static String millis(long nanos) {
+		return Long.toString(nanos / 1000000);
+	}
+}
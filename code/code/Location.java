@@ -52,6 +52,14 @@ public class Location {
 	 * required. Note the vertical direction is inverted
 	 */
 	public Point asPoint(Location origin, double scale) {
+		return asPoint(x, y, origin, scale);
+	}
+
+	/**
+	 * The same as asPoint, for coordinates read from packed arrays (see
+	 * Coordinates) without a Location object in between.
+	 */
+	public static Point asPoint(double x, double y, Location origin, double scale) {
 		int u = (int) ((x - origin.x) * scale);
 		int v = (int) ((origin.y - y) * scale);
 		return new Point(u, v);
@@ -72,10 +80,23 @@ public class Location {
 	 * is the format used in the data files.
 	 */
 	public static Location newFromLatLon(double lat, double lon) {
-		double y = (lat - CENTRE_LAT) * SCALE_LAT;
-		double x = (lon - CENTRE_LON)
+		return new Location(xFromLatLon(lat, lon), yFromLatLon(lat));
+	}
+
+	/**
+	 * The x coordinate newFromLatLon would give, for filling packed coordinate
+	 * arrays without creating Location objects.
+	 */
+	public static double xFromLatLon(double lat, double lon) {
+		return (lon - CENTRE_LON)
 				* (SCALE_LAT * Math.cos((lat - CENTRE_LAT) * DEG_TO_RAD));
-		return new Location(x, y);
+	}
+
+	/**
+	 * The y coordinate newFromLatLon would give.
+	 */
+	public static double yFromLatLon(double lat) {
+		return (lat - CENTRE_LAT) * SCALE_LAT;
 	}
 
 	// ------------------------------------------
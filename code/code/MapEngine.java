@@ -0,0 +1,275 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The routing engine without the GUI: loads a Graph (from its snapshot when
+ * that is up to date) and answers shortest path, articulation point, road
+ * search and connectivity queries. Nothing here touches java.awt, so it runs
+ * on a server or in a batch job without a display; drawing is in GraphRenderer.
+ *
+ * The searches keep their state in per-thread SearchWorkspaces, so queries can
+ * be run from many threads at once. Applying a delta to the Graph while
+ * queries are running is not supported. With -Dmapper.turnGraph=true routes
+ * are searched over the edge based TurnGraph instead of the nodes, and with
+ * -Dmapper.bidirectional=true from both ends at once, see BidirectionalSearch.
+ *
+ * Usage: java MapEngine <data directory> route|time <from> <to>
+ *                                        | artpts | search <prefix> | connected <a> <b> | partition
+ */
+public class MapEngine {
+
+	/**If set (-Dmapper.bidirectional=true), routes are found with BidirectionalSearch unless the TurnGraph is on*/
+	public static final boolean BIDIRECTIONAL = Boolean.getBoolean("mapper.bidirectional");
+
+	private final Graph graph;
+	private final LoadProfile profile;
+	private final File directory;						//Where the snapshot and partition files go
+	private final long checksum;						//Of the source files
+
+	private MapEngine(Graph graph, LoadProfile profile, File directory, long checksum) {
+		this.graph = graph;
+		this.profile = profile;
+		this.directory = directory;
+		this.checksum = checksum;
+	}
+
+	/**Loads the data files in the given directory, see GraphSnapshot.sourceFiles*/
+	public static MapEngine load(File dir) throws IOException {
+		File[] f = GraphSnapshot.sourceFiles(dir);
+		return load(f[0], f[1], f[2], f[3], f[4], f[5]);
+	}
+
+	/**Restores the Graph from the snapshot next to the nodes file if it is
+	 * still up to date, otherwise parses the files and writes a new snapshot.
+	 * Then builds the road name Trie. Every step is measured, see getProfile.*/
+	public static MapEngine load(File nodes, File roads, File segments, File polygons, File restrictions, File traffic) throws IOException {
+
+		File directory = nodes.getAbsoluteFile().getParentFile();
+		File snapshot = new File(directory, GraphSnapshot.FILENAME);
+		LoadProfile profile = new LoadProfile();
+		long checksum = profile.measure("checksum", () -> GraphSnapshot.checksum(nodes, roads, segments, polygons, restrictions, traffic));
+
+		Graph graph = null;
+		try {
+			graph = profile.measure("read snapshot", () -> GraphSnapshot.read(snapshot, checksum));
+		} catch (IOException e) {
+			e.printStackTrace();					//Unreadable snapshot, rebuild it below
+		}
+
+		if (graph != null) {
+			if (Graph.LAZY_POLYGONS && polygons != null)
+				graph.setPolygonIndex(new PolygonIndex(polygons));
+			profile.measure("arcs", graph::getCsr);
+			profile.measure("names", graph::getRoadNameIndex);
+			if (Graph.TURN_GRAPH)
+				profile.measure("turns", graph::getTurnGraph);
+		} else {
+			Graph built = new Graph(nodes, roads, segments, polygons, restrictions, traffic);
+			profile.addAll(built.getProfile());
+			try {
+				profile.measure("write snapshot", () -> {
+					GraphSnapshot.write(built, snapshot, checksum);		//Compile it for next time
+					return null;
+				});
+			} catch (IOException e) {
+				e.printStackTrace();				//Still usable, just slower next time
+			}
+			graph = built;
+		}
+
+		profile.measure("trie", graph::getTrie);
+		return new MapEngine(graph, profile, directory, checksum);
+	}
+
+	public Graph getGraph() {
+		return graph;
+	}
+
+	/**Returns the road name Trie, rebuilt after a delta changed the Roads, see Graph.getTrie*/
+	public Trie getTrie() {
+		return graph.getTrie();
+	}
+
+	/**Returns the measurements of every load step*/
+	public LoadProfile getProfile() {
+		return profile;
+	}
+
+	/**Returns the cells of Partition.DEFAULT_BOUNDS, read from the partition file
+	 * next to the data if it is up to date, otherwise computed and written there.
+	 * The Graph drops it with the CsrGraph when a delta changes the arcs, it is
+	 * then computed again for the changed Graph and not written.*/
+	public synchronized Partition getPartition() throws IOException {
+		Partition partition = graph.cachedPartition();
+		if (partition == null) {
+			CsrGraph csr = graph.getCsr();
+			boolean fromFiles = !graph.isModified();			//The file only describes the source files
+			File file = new File(directory, Partition.FILENAME);
+			if (fromFiles)
+				partition = profile.measure("read partition", () -> Partition.read(csr, file, checksum, Partition.DEFAULT_BOUNDS));
+			if (partition == null) {
+				partition = profile.measure("partition", () -> new Partitioner(csr).partition(Partition.DEFAULT_BOUNDS));
+				try {
+					if (fromFiles)
+						partition.write(csr, file, checksum);
+				} catch (IOException e) {
+					e.printStackTrace();				//Still usable, just computed again next time
+				}
+			}
+			graph.cachePartition(partition);
+		}
+		return partition;
+	}
+
+	/**Returns the graph as an OffHeapGraph mapped from the file next to the data,
+	 * writing the file first if it is missing or out of date. Once a delta has
+	 * changed the Graph the file no longer matches it, so the arcs are copied
+	 * into a direct buffer instead. Each call maps (or copies) it again.*/
+	public OffHeapGraph openOffHeap() throws IOException {
+		if (graph.isModified())
+			return profile.measure("copy off heap", () -> OffHeapGraph.copyOf(graph.getCsr()));
+		return profile.measure("map off heap", () -> OffHeapGraph.open(directory, checksum, graph.getCsr()));
+	}
+
+	/**Returns the Node with the given id, or null*/
+	public Node getNode(int nodeID) {
+		return graph.nodes.get(nodeID);
+	}
+
+	/**Returns true if there is a path between the two Nodes, ignoring one-way roads*/
+	public boolean isConnected(Node from, Node to) {
+		return graph.checkRoute(from, to);
+	}
+
+	/**Finds the shortest path by distance
+	 *
+	 * @return List<Segment> - the path from the destination back to the origin, or null if there is none*/
+	public List<Segment> shortestPath(Node from, Node to) {
+		if (!graph.checkRoute(from, to))
+			return null;
+		if (from == to)
+			return Collections.emptyList();
+		AStarSearch search = new AStarSearch(graph, from, to);
+		return found(Graph.TURN_GRAPH ? search.searchTurns(false)
+				: BIDIRECTIONAL ? search.searchBidirectional(false) : search.searchDist());
+	}
+
+	/**Finds the fastest path: each arc takes its length at the road's speed
+	 * limit, plus AStarSearch.LIGHT_DELAY if it leads to traffic lights
+	 *
+	 * @return List<Segment> - the path from the destination back to the origin, or null if there is none*/
+	public List<Segment> fastestPath(Node from, Node to) {
+		if (!graph.checkRoute(from, to))
+			return null;
+		if (from == to)
+			return Collections.emptyList();
+		AStarSearch search = new AStarSearch(graph, from, to);
+		return found(Graph.TURN_GRAPH ? search.searchTurns(true)
+				: BIDIRECTIONAL ? search.searchBidirectional(true) : search.searchPathTime());
+	}
+
+	/**The searches return an empty path if one-way roads leave no way through*/
+	private static List<Segment> found(List<Segment> path) {
+		return path.isEmpty() ? null : path;
+	}
+
+	public List<Node> articulationPoints() {
+		return new IterArtPts(graph).getArticulationPoints();
+	}
+
+	/**Returns the road matching the name exactly, or else every road starting with it*/
+	public List<Road> searchRoads(String prefix) {
+		List<Road> found = new ArrayList<Road>();
+		Trie trie = graph.getTrie();
+		if (trie.search(prefix))
+			found.add(trie.getRoad(prefix));
+		else if (trie.startsWith(prefix))
+			found.addAll(trie.getPrefixRoads(prefix));
+		return found;
+	}
+
+	/**Returns every piece of the road with the given name, only those in the given city if it isn't null*/
+	public List<Road> roadsNamed(String name, String city) {
+		return graph.getRoadNameIndex().withName(name, city);
+	}
+
+	/**Returns the total length of a path in km*/
+	public static double length(List<Segment> path) {
+		double length = 0;
+		for (Segment s : path)
+			length += s.length;
+		return length;
+	}
+
+	/**Returns the time a path takes at the speed limits, in seconds, without traffic light delays*/
+	public static double time(List<Segment> path) {
+		double time = 0;
+		for (Segment s : path)
+			time += s.length / AStarSearch.getRoadSpeed(s.road.speed) * 3600;
+		return time;
+	}
+
+	/**Returns the time a path to the given Node takes, with AStarSearch.LIGHT_DELAY
+	 * for every traffic light it drives up to, which is what the time searches minimise
+	 *
+	 * @param List<Segment> path - from the destination back to the origin, as the searches return it*/
+	public static double time(List<Segment> path, Node to) {
+		double time = 0;
+		Node head = to;
+		for (Segment s : path) {
+			time += s.length / AStarSearch.getRoadSpeed(s.road.speed) * 3600;
+			if (head.hasLights)
+				time += AStarSearch.LIGHT_DELAY;
+			head = s.other(head);
+		}
+		return time;
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2) {
+			System.out.println("Usage: java MapEngine <data directory> route|time <from> <to> | artpts | search <prefix> | connected <a> <b> | partition");
+			return;
+		}
+		System.setProperty("java.awt.headless", "true");		//Before anything reads it, so profiling is on by default
+
+		MapEngine engine = load(new File(args[0]));
+		engine.getProfile().report();
+
+		switch (args[1]) {
+		case "route":
+		case "time":
+			Node from = engine.getNode(Integer.parseInt(args[2])), to = engine.getNode(Integer.parseInt(args[3]));
+			List<Segment> path = args[1].equals("route") ? engine.shortestPath(from, to) : engine.fastestPath(from, to);
+			if (path == null) {
+				System.out.println("No path: " + args[2] + " - " + args[3]);
+				break;
+			}
+			for (int i = path.size() - 1; i >= 0; i--)
+				System.out.println(path.get(i).road.name + ", " + path.get(i).road.city + "\t" + path.get(i).length + "km");
+			System.out.println("Total: " + length(path) + "km, " + (long) time(path, to) + "s");
+			break;
+		case "artpts":
+			System.out.println(engine.articulationPoints().size() + " articulation points");
+			break;
+		case "search":
+			for (Road r : engine.searchRoads(args[2]))
+				System.out.println(r.roadID + "\t" + r.name + ", " + r.city);
+			break;
+		case "connected":
+			System.out.println(engine.isConnected(engine.getNode(Integer.parseInt(args[2])), engine.getNode(Integer.parseInt(args[3]))));
+			break;
+		case "partition":
+			long start = System.nanoTime();
+			Partition cells = engine.getPartition();
+			System.out.printf("Partitioned in %.1fms%n", (System.nanoTime() - start) / 1e6);
+			cells.report(engine.getGraph().getCsr(), System.out);
+			break;
+		default:
+			System.out.println("Unknown query " + args[1]);
+		}
+	}
+}
@@ -8,9 +8,10 @@ import java.io.File;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -48,7 +49,7 @@ public class Mapper extends GUI {
 
 	// our data structures.
 	private Graph graph;
-	private Trie trie;
+	private final GraphRenderer renderer = new GraphRenderer();
 
 	//Articulation Points
 	private List<Node> articulationPoints;
@@ -57,26 +58,17 @@ public class Mapper extends GUI {
 	@Override
 	protected void redraw(Graphics g) {
 		if (graph != null)
-			graph.draw(g, getDrawingAreaDimension(), origin, scale);
+			renderer.draw(graph, g, getDrawingAreaDimension(), origin, scale);
 	}
 
 	@Override
 	protected void onClick(MouseEvent e, String source) {
 		Location clicked = Location.newFromPoint(e.getPoint(), origin, scale);
 		// find the closest node.
-		double bestDist = Double.MAX_VALUE;
-		Node closest = null;
-
-		for (Node node : graph.nodes.values()) {
-			double distance = clicked.distance(node.location);
-			if (distance < bestDist) {
-				bestDist = distance;
-				closest = node;
-			}
-		}
+		Node closest = graph.getNodeIndex().nearest(clicked);
 
 		// if it's close enough, highlight it and show some information.
-		if (clicked.distance(closest.location) < MAX_CLICKED_DISTANCE) {
+		if (closest != null && clicked.distance(closest.getLocation()) < MAX_CLICKED_DISTANCE) {
 
 			if(source == "Origin"){
 				getSearchOrigin().setText(Integer.toString(closest.nodeID));
@@ -96,8 +88,9 @@ public class Mapper extends GUI {
 	@Override
 	protected void onSearch() {
 
-		if (trie == null)
+		if (graph == null)
 			return;
+		Trie trie = graph.getTrie();											//Rebuilt if a delta changed the Roads
 
 		String prefix = getSearchBox().getText();								//Get User Input
 		String roadNames = null;
@@ -147,11 +140,12 @@ public class Mapper extends GUI {
 	protected void onLoad(File nodes, File roads, File segments, File polygons, File restrictions, File traffic) {
 
 		try {
-			graph = new Graph(nodes, roads, segments, polygons, restrictions, traffic);
+			MapEngine engine = MapEngine.load(nodes, roads, segments, polygons, restrictions, traffic);
+			engine.getProfile().report();
+			graph = engine.getGraph();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		trie = new Trie(graph.roads);
 		origin = new Location(-650, 250); // close enough
 		scale = 1;
 	}
@@ -276,7 +270,7 @@ public class Mapper extends GUI {
 		StringBuilder sb = new StringBuilder();
 		sb.append("Articulation Points: \n");
 		for(Node art: articulationPoints)
-			sb.append("NodeID: "+art.nodeID+ "	Location: "+art.location.x+","+art.location.y+"\n");
+			sb.append("NodeID: "+art.nodeID+ "	Location: "+art.x()+","+art.y()+"\n");
 		sb.append("Total Number of Articulation Points: "+articulationPoints.size());
 		getTextOutputArea().setText(sb.toString());
 
@@ -290,35 +284,32 @@ public class Mapper extends GUI {
 
 		double totalDist = 0, totalTime = 0;
 		List<DisplayNode> txtPath = new ArrayList<DisplayNode>();
-		LinkedHashMap<String, String> visNames = new LinkedHashMap<String, String>();
+		Set<Integer> visNames = new HashSet<Integer>();			//Name ids already listed
 
 		for(int i = path.size()-1; i >= 0; i--){
 
 			Segment segI = path.get(i);
 
-			if( (! visNames.containsKey(segI.road.name)) && (visNames.get(segI.road.name) != segI.road.city) ){
+			if(! visNames.contains(segI.road.nameID)){
 
-				String city = segI.road.city;
-				String name = segI.road.name;
+				Road road = segI.road;
 				double dist = segI.length;
 
 				for(int j = i - 1; j >=0 ; j--){
 
 					Segment segJ = path.get(j);
 
-					if(name == segJ.road.name && city == segJ.road.city){
+					if(road.nameID == segJ.road.nameID && road.cityID == segJ.road.cityID){
 						dist += segJ.length;
 
-						if( (! visNames.containsKey(segJ.road.name)) && (visNames.get(segJ.road.name) != segJ.road.city) )
-							visNames.put(name, city);
+						visNames.add(road.nameID);
 
 					}
 				}
 
-				if( (! visNames.containsKey(segI.road.name)) && (visNames.get(segI.road.name) != segI.road.city) )
-					visNames.put(name, city);
+				visNames.add(road.nameID);
 
-				txtPath.add(new DisplayNode(name, city, dist, AStarSearch.getRoadSpeed(segI.road.speed)));
+				txtPath.add(new DisplayNode(road.name, road.city, dist, AStarSearch.getRoadSpeed(road.speed)));
 			}
 		}
 
@@ -349,35 +340,32 @@ public class Mapper extends GUI {
 
 		double totalTime = 0, totalDist = 0;
 		List<DisplayNode> txtPath = new ArrayList<DisplayNode>();
-		LinkedHashMap<String, String> visNames = new LinkedHashMap<String, String>();
+		Set<Integer> visNames = new HashSet<Integer>();			//Name ids already listed
 
 		for(int i = path.size()-1; i >= 0; i--){
 
 			Segment segI = path.get(i);
 
-			if( (! visNames.containsKey(segI.road.name)) && (visNames.get(segI.road.name) != segI.road.city) ){
+			if(! visNames.contains(segI.road.nameID)){
 
-				String city = segI.road.city;
-				String name = segI.road.name;
+				Road road = segI.road;
 				double dist = segI.length;
 
 				for(int j = i - 1; j >=0 ; j--){
 
 					Segment segJ = path.get(j);
 
-					if(name == segJ.road.name && city == segJ.road.city){
+					if(road.nameID == segJ.road.nameID && road.cityID == segJ.road.cityID){
 
 						dist += segJ.length;
 
-						if( (! visNames.containsKey(segJ.road.name)) && (visNames.get(segJ.road.name) != segJ.road.city) )
-							visNames.put(name, city);
+						visNames.add(road.nameID);
 					}
 				}
 
-				if( (! visNames.containsKey(segI.road.name)) && (visNames.get(segI.road.name) != segI.road.city) )
-					visNames.put(name, city);
+				visNames.add(road.nameID);
 
-				txtPath.add(new DisplayNode(name, city, dist, AStarSearch.getRoadSpeed(segI.road.speed)));
+				txtPath.add(new DisplayNode(road.name, road.city, dist, AStarSearch.getRoadSpeed(road.speed)));
 
 			}
 		}
@@ -0,0 +1,256 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.SplittableRandom;
+
+/**
+ * Writes a synthetic road network in the same file formats as the Auckland
+ * data (nodes, road info, segments, restrictions and traffic lights), for
+ * trying the loader and the searches at sizes the real data doesn't reach.
+ *
+ * The network is a jittered grid of intersections. Every grid line is a
+ * street, cut into several Roads that share its name (like the split roads in
+ * the real data). Every 8th line is an arterial and every 16th, 32nd and 64th
+ * a bigger one, which gives roughly the real mix of road classes; one-way
+ * ratios and speeds per class follow the Auckland roads. A few percent of the
+ * minor links are left out so there are dead ends and separate components.
+ * Arterial crossings get traffic lights, and some intersections get a turn
+ * restriction.
+ *
+ * Output is written row by row and only the previous row is kept, so memory
+ * grows with the square root of the node count. The same size and seed always
+ * give the same files.
+ *
+ * Usage: java NetworkGenerator <output directory> <number of nodes> [seed]
+ */
+public class NetworkGenerator {
+
+	public static final double LAT = -36.85, LON = 174.76;		//North west corner
+	public static final double SPACING_LAT = 0.0009, SPACING_LON = 0.0011;		//About 100m
+	public static final double JITTER = 0.3;					//Of the spacing
+
+	public static final double MISSING_LINK = 0.04;				//Minor links left out
+	public static final double RESTRICTION = 0.006;				//Intersections with a turn restriction
+	public static final double MINOR_LIGHTS = 0.01;				//Minor intersections with lights
+	public static final int REGION = 64;						//Grid lines per city
+
+	//Indexed by road class 0-4, from the Auckland roads
+	private static final double[] ONE_WAY = { 0.006, 0.47, 0.12, 0.09, 0.96 };
+	private static final int[][] SPEEDS = { { 2, 2, 2, 3 }, { 2, 2, 3 }, { 3, 3, 2, 4 }, { 5, 5, 4 }, { 4, 4, 6 } };
+	private static final int[] TYPES = { 6, 4, 3, 2, 1 };
+	private static final String[] SUFFIXES = { "st", "rd", "ave", "pl", "dr", "tce", "cres", "way" };
+
+	private final int rows, cols;
+	private final SplittableRandom random;
+
+	private PrintWriter nodeOut, roadOut, segOut, restOut, lightOut;
+	private int nextRoad = 1, nodeCount, roadCount, segCount, restCount, lightCount;
+
+	//State of the Road each column is on, and the previous row of nodes
+	private int[] colRoad, colLeft;
+	private boolean[] colForward;
+	private double[] prevLat, prevLon;
+
+	/**@param long nodes - approximate number of nodes, the grid is made square*/
+	public NetworkGenerator(long nodes, long seed) {
+		this.cols = (int) Math.max(2, Math.ceil(Math.sqrt(nodes)));
+		this.rows = (int) Math.max(2, (nodes + cols - 1) / cols);
+		if ((long) rows * cols >= Integer.MAX_VALUE)
+			throw new IllegalArgumentException("too many nodes: " + nodes);
+		this.random = new SplittableRandom(seed);
+	}
+
+	/**Writes the data files into the given directory, creating it if needed*/
+	public void write(File dir) throws IOException {
+		dir.mkdirs();
+
+		try (PrintWriter nodes = open(dir, GUI.NODES_FILENAME);
+				PrintWriter roads = open(dir, GUI.ROADS_FILENAME);
+				PrintWriter segs = open(dir, GUI.SEGS_FILENAME);
+				PrintWriter rests = open(dir, GUI.REST_FILENAME);
+				PrintWriter lights = open(dir, GUI.TRAFFIC_FILENAME)) {
+
+			nodeOut = nodes; roadOut = roads; segOut = segs; restOut = rests; lightOut = lights;
+
+			roads.println("roadid\ttype\tlabel\tcity\toneway\tspeed\troadclass\tnotforcar\tnotforpede\tnotforbicy");
+			segs.println("roadID\tlength\tnodeID1\tnodeID2\tcoords");
+			rests.println("NodeID\tRoadID\tNodeID\tRoadID\tNodeID");
+
+			colRoad = new int[cols];
+			colLeft = new int[cols];
+			colForward = new boolean[cols];
+			prevLat = new double[cols];
+			prevLon = new double[cols];
+
+			for (int r = 0; r < rows; r++)
+				writeRow(r);
+		}
+	}
+
+	private void writeRow(int r) {
+		double[] lats = new double[cols], lons = new double[cols];
+		int rowRoad = 0, rowLeft = 0;
+		boolean rowForward = true;
+
+		for (int c = 0; c < cols; c++) {
+			int id = id(r, c);
+			lats[c] = LAT - (r + jitter()) * SPACING_LAT;
+			lons[c] = LON + (c + jitter()) * SPACING_LON;
+			nodeOut.println(id + "\t" + round(lats[c]) + "\t" + round(lons[c]));
+			nodeCount++;
+
+			//Link to the left, along this row's street
+			boolean left = false;
+			if (c > 0 && linked(roadClass(r))) {
+				if (rowLeft == 0) {
+					rowForward = random.nextBoolean();
+					rowRoad = newRoad(r, c, roadClass(r), "row " + r);
+					rowLeft = pieceLength(roadClass(r));
+				}
+				rowLeft--;
+				writeSegment(rowRoad, rowForward, id(r, c - 1), lats[c - 1], lons[c - 1], id, lats[c], lons[c]);
+				left = true;
+			} else
+				rowLeft = 0;					//A gap ends the Road
+
+			//Link up, along this column's street
+			boolean up = false;
+			if (r > 0 && linked(roadClass(c))) {
+				if (colLeft[c] == 0) {
+					colForward[c] = random.nextBoolean();
+					colRoad[c] = newRoad(r, c, roadClass(c), "col " + c);
+					colLeft[c] = pieceLength(roadClass(c));
+				}
+				colLeft[c]--;
+				writeSegment(colRoad[c], colForward[c], id(r - 1, c), prevLat[c], prevLon[c], id, lats[c], lons[c]);
+				up = true;
+			} else
+				colLeft[c] = 0;
+
+			//No left turn from the row street into the column street going up
+			if (left && up && random.nextDouble() < RESTRICTION) {
+				restOut.println(id(r, c - 1) + "\t" + rowRoad + "\t" + id + "\t" + colRoad[c] + "\t" + id(r - 1, c));
+				restCount++;
+			}
+
+			boolean arterials = roadClass(r) > 0 && roadClass(c) > 0;
+			if ((left || up) && (arterials ? random.nextDouble() < 0.8 : random.nextDouble() < MINOR_LIGHTS)) {
+				lightOut.println(round(lons[c] + jitter() * 0.00002) + "\t" + round(lats[c] + jitter() * 0.00002));
+				lightCount++;
+			}
+		}
+
+		prevLat = lats;
+		prevLon = lons;
+	}
+
+	/**Writes a Segment from a to b, or from b to a if the Road runs the other way*/
+	private void writeSegment(int road, boolean forward, int a, double latA, double lonA, int b, double latB, double lonB) {
+		if (!forward) {
+			int t = a; a = b; b = t;
+			double d = latA; latA = latB; latB = d;
+			d = lonA; lonA = lonB; lonB = d;
+		}
+
+		StringBuilder sb = new StringBuilder();
+		double length;
+		if (random.nextBoolean()) {						//Bend half of them through a middle point
+			double latM = (latA + latB) / 2 + jitter() * SPACING_LAT * 0.2;
+			double lonM = (lonA + lonB) / 2 + jitter() * SPACING_LON * 0.2;
+			length = distance(latA, lonA, latM, lonM) + distance(latM, lonM, latB, lonB);
+			sb.append(round(latA)).append('\t').append(round(lonA)).append('\t')
+					.append(round(latM)).append('\t').append(round(lonM)).append('\t')
+					.append(round(latB)).append('\t').append(round(lonB));
+		} else {
+			length = distance(latA, lonA, latB, lonB);
+			sb.append(round(latA)).append('\t').append(round(lonA)).append('\t')
+					.append(round(latB)).append('\t').append(round(lonB));
+		}
+
+		segOut.println(road + "\t" + length + "\t" + a + "\t" + b + "\t" + sb);
+		segCount++;
+	}
+
+	private int newRoad(int r, int c, int roadClass, String line) {
+		int id = nextRoad++;
+		int city = (r / REGION) * (cols / REGION + 1) + c / REGION;
+		String name = line + " " + SUFFIXES[(line.hashCode() & 0x7fffffff) % SUFFIXES.length];
+		int oneWay = random.nextDouble() < ONE_WAY[roadClass] ? 1 : 0;
+		int[] speeds = SPEEDS[roadClass];
+		int speed = speeds[random.nextInt(speeds.length)];
+		int notForPede = roadClass == 4 ? 1 : 0;
+
+		roadOut.println(id + "\t" + TYPES[roadClass] + "\t" + name + "\tcity " + city + "\t" + oneWay + "\t"
+				+ speed + "\t" + roadClass + "\t0\t" + notForPede + "\t" + notForPede);
+		roadCount++;
+		return id;
+	}
+
+	/**Road class of a grid line: every 8th line is an arterial, every 16th, 32nd and 64th bigger*/
+	private static int roadClass(int line) {
+		if (line % 64 == 0)
+			return 4;
+		if (line % 32 == 0)
+			return 3;
+		if (line % 16 == 0)
+			return 2;
+		if (line % 8 == 0)
+			return 1;
+		return 0;
+	}
+
+	/**Number of links in a Road, minor Roads are cut into shorter pieces*/
+	private int pieceLength(int roadClass) {
+		return roadClass == 0 ? 1 + random.nextInt(6) : 5 + random.nextInt(16);
+	}
+
+	private boolean linked(int roadClass) {
+		return roadClass > 0 || random.nextDouble() >= MISSING_LINK;
+	}
+
+	private double jitter() {
+		return (random.nextDouble() - 0.5) * 2 * JITTER;
+	}
+
+	private int id(int r, int c) {
+		return r * cols + c + 1;
+	}
+
+	/**Distance in km, the same units Location uses*/
+	private static double distance(double lat1, double lon1, double lat2, double lon2) {
+		double dx = Location.xFromLatLon(lat1, lon1) - Location.xFromLatLon(lat2, lon2);
+		double dy = Location.yFromLatLon(lat1) - Location.yFromLatLon(lat2);
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	private static String round(double v) {
+		return Double.toString(Math.round(v * 1e6) / 1e6);
+	}
+
+	private static PrintWriter open(File dir, String name) throws IOException {
+		return new PrintWriter(new BufferedWriter(new FileWriter(new File(dir, name)), 1 << 16));
+	}
+
+	@Override
+	public String toString() {
+		return nodeCount + " nodes, " + roadCount + " roads, " + segCount + " segments, "
+				+ restCount + " restrictions, " + lightCount + " traffic lights";
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2) {
+			System.out.println("Usage: java NetworkGenerator <output directory> <number of nodes> [seed]");
+			return;
+		}
+
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 261;
+		NetworkGenerator generator = new NetworkGenerator(Long.parseLong(args[1]), seed);
+
+		long start = System.nanoTime();
+		generator.write(new File(args[0]));
+		System.out.println("Wrote " + generator + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+	}
+}
@@ -1,75 +1,69 @@
-import java.awt.Dimension;
-import java.awt.Graphics;
-import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 /**
- * Node represents an intersection in the road graph. It stores its ID and its
- * location, as well as all the segments that it connects to. It knows how to
- * draw itself, and has an informative toString method.
+ * Node represents an intersection in the road graph. It stores its ID and all
+ * the segments that it connects to; its location is kept in the Graph's
+ * Coordinates under its dense index. It has an informative toString method,
+ * drawing is done by GraphRenderer.
  *
  * @author tony
  */
-public class Node implements Comparable<Node>{
+public class Node implements Comparable<Node>, DenseList.Indexed {
 
 	public final int nodeID;
-	public final Location location;
+	final Coordinates coords;						//Where the location is kept
 	public final Collection<Segment> segments;
+	int index = -1;									//Dense index in Graph.nodes, see IdTable
 
 	private Collection<Segment> inNeighbours;
 	private Collection<Segment> outNeighbours;		//Edges Coming out of Node
 
-	private Collection<Node> neighbours;			//Direct Neighbors of Node
-
-	private boolean visited;						//A* Search Variables
-	private Node pathFrom;
-	private double cost;
-
-	private int depth;
-	private int reachBack;							//Articulation Points Variables
-
-	private int dist;
-	private Node parent;							//Breadth First Search Variables
+	private Node[] neighbours;						//Direct Neighbors of Node, null until worked out
 
 	private List<Restriction> restrictions;			//Node Restriction
 
 	public boolean hasLights; 						//Traffic Light
 
 
-	public Node(int nodeID, double lat, double lon) {
+	/**Creates a Node whose location will be kept in the given Coordinates,
+	 * set it there once the Node has its index*/
+	public Node(int nodeID, Coordinates coords) {
 		this.nodeID = nodeID;
-		this.location = Location.newFromLatLon(lat, lon);
+		this.coords = coords;
 		this.segments = new HashSet<Segment>();
 
-		this.visited = false;					//Initially set to false
-		this.pathFrom = null;					//Initially null
-
 		this.inNeighbours = new ArrayList<Segment>();
 		this.outNeighbours = new ArrayList<Segment>();
 
-		this.neighbours = new ArrayList<Node>();
 		this.restrictions = new ArrayList<Restriction>();
 
 		this.setHasLights(false);
 	}
 
-	public void addSegment(Segment seg) {
-		segments.add(seg);
+	public double x() {
+		return coords.x(index);
 	}
 
-	public void draw(Graphics g, Dimension area, Location origin, double scale) {
-		Point p = location.asPoint(origin, scale);
+	public double y() {
+		return coords.y(index);
+	}
 
-		// for efficiency, don't render nodes that are off-screen.
-		if (p.x < 0 || p.x > area.width || p.y < 0 || p.y > area.height)
-			return;
+	/**Returns the location as a new Location object*/
+	public Location getLocation() {
+		return coords.location(index);
+	}
 
-		int size = (int) (Mapper.NODE_GRADIENT * Math.log(scale) + Mapper.NODE_INTERCEPT);
-		g.fillRect(p.x - size / 2, p.y - size / 2, size, size);
+	public void addSegment(Segment seg) {
+		segments.add(seg);
+	}
+
+	public void removeSegment(Segment seg) {
+		segments.remove(seg);
 	}
 
 	public String toString() {
@@ -79,7 +73,7 @@ public class Node implements Comparable<Node>{
 				edges.add(s.road.name);
 		}
 
-		String str = "ID: " + nodeID + "  loc: " + location + "\nroads: ";
+		String str = "ID: " + nodeID + "  loc: " + getLocation() + "\nroads: ";
 		for (String e : edges) {
 			str += e + ", ";
 		}
@@ -97,77 +91,48 @@ public class Node implements Comparable<Node>{
 		return outNeighbours;
 	}
 
-	public Collection<Node> getNeighbours(){
-
-		for(Segment s : outNeighbours){
-			if(s.start.nodeID == nodeID)
-				neighbours.add(s.end);
-			else if(s.end.nodeID == nodeID)
-				neighbours.add(s.start);
+	/**Returns the Nodes joined to this one by a Segment in either direction,
+	 * each once and without this Node itself. Worked out on the first call
+	 * and kept until invalidateNeighbours; don't modify the array.
+	 *
+	 * @return Node[] - direct neighbours of this node*/
+	public Node[] getNeighbours(){
+
+		Node[] found = neighbours;
+		if(found == null){
+			found = new Node[segments.size()];
+			int count = 0;
+
+			for(Segment s : segments){
+				Node other = s.start == this ? s.end : s.start;
+				if(other == this)
+					continue;							//A loop doesn't lead anywhere
+				boolean seen = false;
+				for(int i = 0; i < count && !seen; i++)
+					seen = found[i] == other;			//Degrees are small, a scan beats a Set
+				if(!seen)
+					found[count++] = other;
+			}
+			if(count < found.length)
+				found = Arrays.copyOf(found, count);
+			neighbours = found;
 		}
-		return neighbours;
-	}
-
-	public boolean isVisited() {
-		return visited;
-	}
-
-	public void setVisited(boolean visited) {
-		this.visited = visited;
-	}
-
-	public Node getPathFrom() {
-		return pathFrom;
-	}
-
-	public void setPathFrom(Node pathFrom) {
-		this.pathFrom = pathFrom;
-	}
-
-	public double getCostToHere() {
-		return cost;
-	}
-
-
-
-	public double getCost() {
-		return cost;
-	}
-
-	public void setCost(double cost) {
-		this.cost = cost;
-	}
-
-	public int getDepth() {
-		return depth;
+		return found;
 	}
 
-	public void setDepth(int depth) {
-		this.depth = depth;
+	/**Forgets the neighbours, for when a Segment is added or removed*/
+	public void invalidateNeighbours() {
+		neighbours = null;
 	}
 
-	public int getReachBack() {
-		return reachBack;
-	}
-
-	public void setReachBack(int reachBack) {
-		this.reachBack = reachBack;
-	}
-
-	public int getDist() {
-		return dist;
-	}
-
-	public void setDist(int dist) {
-		this.dist = dist;
-	}
-
-	public Node getParent() {
-		return parent;
+	@Override
+	public int getIndex() {
+		return index;
 	}
 
-	public void setParent(Node parent) {
-		this.parent = parent;
+	@Override
+	public void setIndex(int index) {
+		this.index = index;
 	}
 
 	public List<Restriction> getRestrictions() {
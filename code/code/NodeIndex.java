@@ -0,0 +1,136 @@
+import java.util.Collection;
+
+/**
+ * A 2D tree over the Locations of a set of Nodes, used for nearest Node
+ * lookups (matching traffic lights to intersections, finding the clicked Node).
+ * Built once in O(n log n), each query then takes O(log n) on average instead
+ * of a scan over every Node.
+ *
+ * The tree is implicit: the Nodes are stored in one array, and the median of
+ * each range (split alternately on x and y) sits in the middle of that range.
+ * It doesn't change after it is built and each query keeps its own state, so
+ * any number of threads can query it at once without locking.
+ */
+public class NodeIndex {
+
+	private final Node[] nodes;
+	private final double[] xs, ys;			//Coordinates in tree order, so queries don't touch the Nodes
+
+	public NodeIndex(Collection<Node> nodes) {
+		this.nodes = nodes.toArray(new Node[nodes.size()]);
+		this.xs = new double[this.nodes.length];
+		this.ys = new double[this.nodes.length];
+
+		for (int i = 0; i < this.nodes.length; i++) {
+			xs[i] = this.nodes[i].x();
+			ys[i] = this.nodes[i].y();
+		}
+		build(0, this.nodes.length, true);
+	}
+
+	/**Returns the Node closest to the given Location, or null if there are no Nodes*/
+	public Node nearest(Location loc) {
+		return nearest(loc, Double.POSITIVE_INFINITY);
+	}
+
+	/**Returns the Node closest to the given Location, or null if there is no Node within maxDist
+	 *
+	 * @param Location loc, double maxDist*/
+	public Node nearest(Location loc, double maxDist) {
+		Query query = new Query(loc.x, loc.y, maxDist * maxDist);
+		search(0, nodes.length, true, query);
+		return query.best < 0 ? null : nodes[query.best];
+	}
+
+	public int size() {
+		return nodes.length;
+	}
+
+	/**The state of one nearest query*/
+	private static final class Query {
+		final double x, y;
+		int best = -1;						//Tree position of the closest Node so far
+		double bestDist;					//Its squared distance, or the squared maxDist
+
+		Query(double x, double y, double bestDist) {
+			this.x = x;
+			this.y = y;
+			this.bestDist = bestDist;
+		}
+	}
+
+	private void search(int lo, int hi, boolean splitX, Query q) {
+		if (lo >= hi)
+			return;
+
+		int mid = (lo + hi) >>> 1;
+		double dx = xs[mid] - q.x, dy = ys[mid] - q.y;
+		double d = dx * dx + dy * dy;
+		if (d <= q.bestDist) {
+			q.bestDist = d;
+			q.best = mid;
+		}
+
+		double diff = splitX ? q.x - xs[mid] : q.y - ys[mid];
+		if (diff < 0) {
+			search(lo, mid, !splitX, q);					//Near side first
+			if (diff * diff <= q.bestDist)
+				search(mid + 1, hi, !splitX, q);
+		} else {
+			search(mid + 1, hi, !splitX, q);
+			if (diff * diff <= q.bestDist)
+				search(lo, mid, !splitX, q);
+		}
+	}
+
+	/**Arranges [lo, hi) so the median on the current axis is in the middle,
+	 * smaller values before it and larger after, then recurses on both halves*/
+	private void build(int lo, int hi, boolean splitX) {
+		if (hi - lo <= 1)
+			return;
+
+		int mid = (lo + hi) >>> 1;
+		select(lo, hi - 1, mid, splitX ? xs : ys);
+
+		build(lo, mid, !splitX);
+		build(mid + 1, hi, !splitX);
+	}
+
+	/**Quickselect: partially sorts [left, right] so position k holds the value it would have when sorted*/
+	private void select(int left, int right, int k, double[] keys) {
+		while (right > left) {
+			double pivot = keys[(left + right) >>> 1];
+			int i = left, j = right;
+
+			while (i <= j) {
+				while (keys[i] < pivot)
+					i++;
+				while (keys[j] > pivot)
+					j--;
+				if (i <= j)
+					swap(i++, j--);
+			}
+
+			if (k <= j)
+				right = j;
+			else if (k >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+
+	private void swap(int i, int j) {
+		Node n = nodes[i];
+		nodes[i] = nodes[j];
+		nodes[j] = n;
+
+		double t = xs[i];
+		xs[i] = xs[j];
+		xs[j] = t;
+
+		t = ys[i];
+		ys[i] = ys[j];
+		ys[j] = t;
+	}
+}
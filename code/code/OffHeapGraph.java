@@ -0,0 +1,331 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A RoutingGraph whose arrays live outside the Java heap, in one direct or
+ * memory mapped ByteBuffer, so a large map costs the garbage collector a
+ * handful of objects instead of millions of Nodes and Segments. A mapped file
+ * is shared through the page cache by every process that maps it.
+ *
+ * The buffer holds the same columns as a CsrGraph (arcs, reverse arcs, arc
+ * lengths and times, coordinates, lights, the TurnRestrictions table, node ids) behind
+ * a header with a magic number, a format version and the checksum of the
+ * source files, like GraphSnapshot. Only the file id -> index table is built
+ * on the heap when a graph is opened. There are no Segments or Roads, so
+ * results are arcs and node indices; CsrGraph is still what the GUI uses.
+ * MapEngine.openOffHeap opens one for a loaded engine.
+ *
+ * A single mapping is limited to 2GB, about 25 million arcs.
+ *
+ * Usage: java OffHeapGraph <data directory> route|time <from> <to> | components
+ */
+public class OffHeapGraph implements RoutingGraph {
+
+	public static final String FILENAME = "graph.offheap";
+
+	private static final int MAGIC = 0x4152474F;		//"ARGO"
+	private static final int VERSION = 3;
+	private static final int HEADER = 40;				//Bytes, keeps the double and long columns 8 byte aligned
+
+	private final ByteBuffer buffer;					//Kept so a mapping stays reachable
+	private final int nodeCount, arcCount;
+	private final double heuristicScale;
+	private final DoubleBuffer xy, lengths, times;
+	private final LongBuffer turns;						//See TurnRestrictions
+	private final int turnCount;
+	private final IntBuffer offsets, inOffsets, sources, targets, roadIDs, inArcs, nodeIDs;
+	private final ByteBuffer lights;
+	private final IntIntMap indices;					//File id -> index
+
+	private OffHeapGraph(ByteBuffer buffer) {
+		this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+		this.nodeCount = buffer.getInt(16);
+		this.arcCount = buffer.getInt(20);
+		int turnSlots = buffer.getInt(24);
+		this.turnCount = buffer.getInt(28);
+		this.heuristicScale = buffer.getDouble(32);
+
+		int[] pos = {HEADER};
+		xy = doubles(pos, 2 * nodeCount);
+		lengths = doubles(pos, arcCount);
+		times = doubles(pos, arcCount);
+		turns = view(pos, 8 * turnSlots).asLongBuffer();
+		offsets = ints(pos, nodeCount + 1);
+		inOffsets = ints(pos, nodeCount + 1);
+		sources = ints(pos, arcCount);
+		targets = ints(pos, arcCount);
+		roadIDs = ints(pos, arcCount);
+		inArcs = ints(pos, arcCount);
+		nodeIDs = ints(pos, nodeCount);
+		lights = view(pos, nodeCount);
+
+		indices = new IntIntMap(nodeCount);
+		for (int i = 0; i < nodeCount; i++)
+			indices.put(nodeIDs.get(i), i);
+	}
+
+	/**Returns the number of bytes a copy of the graph takes*/
+	private static long size(CsrGraph csr) {
+		long n = csr.nodeCount, m = csr.arcCount;
+		return HEADER + 8 * (2 * n + 2 * m + csr.turns.keys.length) + 4 * (2 * (n + 1) + 4 * m + n) + n;
+	}
+
+	//===========================OPENING===========================
+
+	/**Copies a CsrGraph into a direct buffer, off the heap but not shared*/
+	public static OffHeapGraph copyOf(CsrGraph csr) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(checkedSize(csr)).order(ByteOrder.LITTLE_ENDIAN);
+		fill(buffer, csr, 0);
+		return new OffHeapGraph(buffer);
+	}
+
+	/**Writes a CsrGraph to the given file, for map
+	 *
+	 * @param long checksum - checksum of the source files, see GraphSnapshot.checksum*/
+	public static void write(CsrGraph csr, File file, long checksum) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(0);
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, checkedSize(csr));
+			fill(buffer.order(ByteOrder.LITTLE_ENDIAN), csr, checksum);
+			buffer.force();
+		}
+	}
+
+	/**Maps a file written by write, read only
+	 *
+	 * @return OffHeapGraph - null if the file is missing, of another version or built from other source files*/
+	public static OffHeapGraph map(File file, long checksum) throws IOException {
+		if (!file.exists() || file.length() < HEADER)
+			return null;
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()).order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != checksum)
+				return null;
+			return new OffHeapGraph(buffer);		//The mapping outlives the channel
+		}
+	}
+
+	private static int checkedSize(CsrGraph csr) {
+		long size = size(csr);
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Graph too large for one buffer: " + size + " bytes");
+		return (int) size;
+	}
+
+	private static void fill(ByteBuffer buffer, CsrGraph csr, long checksum) {
+
+		int n = csr.nodeCount, m = csr.arcCount;
+		buffer.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, checksum);
+		buffer.putInt(16, n).putInt(20, m).putInt(24, csr.turns.keys.length).putInt(28, csr.turns.size());
+		buffer.putDouble(32, csr.heuristicScale);
+
+		int[] pos = {HEADER};
+		put(buffer, pos, csr.xy, 2 * n);
+		put(buffer, pos, csr.lengths, m);
+		put(buffer, pos, csr.times, m);
+		buffer.position(pos[0]);
+		buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(csr.turns.keys);
+		pos[0] += 8 * csr.turns.keys.length;
+		put(buffer, pos, csr.offsets, n + 1);
+		put(buffer, pos, csr.inOffsets, n + 1);
+		put(buffer, pos, csr.sources, m);
+		put(buffer, pos, csr.targets, m);
+		put(buffer, pos, csr.roadIDs, m);
+		put(buffer, pos, csr.inArcs, m);
+		int[] ids = new int[n];
+		for (int i = 0; i < n; i++)
+			ids[i] = csr.nodeID(i);
+		put(buffer, pos, ids, n);
+		for (int i = 0; i < n; i++)
+			buffer.put(pos[0] + i, (byte) (csr.lights[i] ? 1 : 0));
+	}
+
+	//Column helpers, pos is the running byte offset
+
+	private static void put(ByteBuffer buffer, int[] pos, double[] values, int count) {
+		buffer.position(pos[0]);
+		buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().put(values, 0, count);
+		pos[0] += 8 * count;
+	}
+
+	private static void put(ByteBuffer buffer, int[] pos, int[] values, int count) {
+		buffer.position(pos[0]);
+		buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(values, 0, count);
+		pos[0] += 4 * count;
+	}
+
+	private ByteBuffer view(int[] pos, int bytes) {
+		ByteBuffer view = buffer.duplicate().position(pos[0]).limit(pos[0] + bytes).slice().order(ByteOrder.LITTLE_ENDIAN);
+		pos[0] += bytes;
+		return view;
+	}
+
+	private DoubleBuffer doubles(int[] pos, int count) {
+		return view(pos, 8 * count).asDoubleBuffer();
+	}
+
+	private IntBuffer ints(int[] pos, int count) {
+		return view(pos, 4 * count).asIntBuffer();
+	}
+
+	//===========================ACCESSORS=========================
+
+	public int nodeCount() {
+		return nodeCount;
+	}
+
+	public int arcCount() {
+		return arcCount;
+	}
+
+	public int begin(int node) {
+		return offsets.get(node);
+	}
+
+	public int end(int node) {
+		return offsets.get(node + 1);
+	}
+
+	public int inBegin(int node) {
+		return inOffsets.get(node);
+	}
+
+	public int inEnd(int node) {
+		return inOffsets.get(node + 1);
+	}
+
+	public int inArc(int position) {
+		return inArcs.get(position);
+	}
+
+	public int source(int arc) {
+		return sources.get(arc);
+	}
+
+	public int target(int arc) {
+		return targets.get(arc);
+	}
+
+	public double length(int arc) {
+		return lengths.get(arc);
+	}
+
+	public double time(int arc) {
+		return times.get(arc);
+	}
+
+	public int roadID(int arc) {
+		return roadIDs.get(arc);
+	}
+
+	public boolean hasLights(int node) {
+		return lights.get(node) != 0;
+	}
+
+	public boolean isTurnRestricted(int inArc, int outArc) {
+		if (turnCount == 0)
+			return false;
+		long key = TurnRestrictions.key(inArc, outArc);
+		int mask = turns.capacity() - 1;
+		for (int i = TurnRestrictions.slot(key, mask), probes = 0; turns.get(i) != TurnRestrictions.EMPTY && probes <= mask; i = (i + 1) & mask, probes++) {
+			if (turns.get(i) == key)
+				return true;
+		}
+		return false;
+	}
+
+	public double x(int node) {
+		return xy.get(2 * node);
+	}
+
+	public double y(int node) {
+		return xy.get(2 * node + 1);
+	}
+
+	public double distanceBound(int from, int to) {
+		double dx = x(from) - x(to), dy = y(from) - y(to);
+		return Math.sqrt(dx * dx + dy * dy) * heuristicScale;
+	}
+
+	public int nodeID(int node) {
+		return nodeIDs.get(node);
+	}
+
+	public int indexOf(int nodeID) {
+		return indices.get(nodeID);
+	}
+
+	//===========================COMMAND LINE======================
+
+	/**Maps the graph file of a data directory, writing it first if it is missing or out of date*/
+	public static OffHeapGraph open(File dir) throws IOException {
+		long checksum = GraphSnapshot.checksum(GraphSnapshot.sourceFiles(dir));
+		OffHeapGraph graph = map(new File(dir, FILENAME), checksum);
+		return graph != null ? graph : open(dir, checksum, MapEngine.load(dir).getGraph().getCsr());
+	}
+
+	/**Maps the graph file of a data directory, first writing the given CsrGraph
+	 * (loaded from the files with that checksum) to it if it is missing or out of date*/
+	static OffHeapGraph open(File dir, long checksum, CsrGraph csr) throws IOException {
+		File file = new File(dir, FILENAME);
+		OffHeapGraph graph = map(file, checksum);
+		if (graph == null) {
+			write(csr, file, checksum);
+			graph = map(file, checksum);
+		}
+		return graph;
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2) {
+			System.out.println("Usage: java OffHeapGraph <data directory> route|time <from> <to> | components");
+			return;
+		}
+		System.setProperty("java.awt.headless", "true");
+
+		long start = System.nanoTime();
+		OffHeapGraph g = open(new File(args[0]));
+		System.out.printf("Mapped %d nodes, %d arcs in %.1fms%n", g.nodeCount, g.arcCount, (System.nanoTime() - start) / 1e6);
+
+		switch (args[1]) {
+		case "route":
+		case "time":
+			int from = g.indexOf(Integer.parseInt(args[2])), to = g.indexOf(Integer.parseInt(args[3]));
+			if (from < 0 || to < 0) {
+				System.out.println("Unknown node");
+				break;
+			}
+			boolean byTime = args[1].equals("time");
+			SearchWorkspace ws = byTime ? AStarSearch.timeSearch(g, from, to) : AStarSearch.distSearch(g, from, to);
+			int[] arcs = AStarSearch.arcPath(g, ws, to);
+			if (arcs == null) {
+				System.out.println("No path: " + args[2] + " - " + args[3]);
+				break;
+			}
+			double length = 0, time = 0;
+			for (int i = arcs.length - 1; i >= 0; i--) {
+				System.out.println(g.nodeID(g.source(arcs[i])) + " -> " + g.nodeID(g.target(arcs[i])) + "\troad " + g.roadID(arcs[i]) + "\t" + g.length(arcs[i]) + "km");
+				length += g.length(arcs[i]);
+				time += g.time(arcs[i]);
+			}
+			System.out.println("Total: " + length + "km, " + (long) time + "s");
+			break;
+		case "components":
+			int[] component = Components.label(g);
+			System.out.println(Components.count(component) + " components");
+			break;
+		default:
+			System.out.println("Unknown query " + args[1]);
+		}
+	}
+}
@@ -2,13 +2,16 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * This utility class provides three static methods for parsing each of the
@@ -16,12 +19,33 @@ import java.util.Set;
  * Internally it uses BufferedReaders instead of Scanners to read in the files,
  * as Scanners are pathetically slow.
  *
+ * The nodes and segments files can also be read through a memory-mapped
+ * TabScanner (see Mode.MAPPED), which produces the same Graph without creating
+ * a String for every token. Polygons are always streamed from a mapped file
+ * (parsePolygonsStreaming), whatever the Mode, unless Graph.LEGACY_POLYGONS is set.
+ *
  * @author tony
  */
 public class Parser {
 
-	public static Map<Integer, Node> parseNodes(File nodes, Graph graph) {
-		Map<Integer, Node> map = new HashMap<Integer, Node>();
+	/**How the nodes and segments files are read, polygons don't depend on it*/
+	public enum Mode {
+		READER,			//BufferedReader + String.split
+		MAPPED,			//Memory-mapped TabScanner
+		PARALLEL		//MAPPED, with the segments file parsed in chunks on several cores
+	}
+
+	/**How far a traffic light can be from its Node*/
+	private static final double MAX_LIGHT_DISTANCE = 1000;
+
+	/**Smallest chunk of the segments file worth handing to another thread*/
+	private static final int MIN_CHUNK_BYTES = 1 << 16;
+
+	/**Mode used when none is given, can be set with -Dmapper.parser=mapped*/
+	public static final Mode DEFAULT_MODE = Mode.valueOf(System.getProperty("mapper.parser", "reader").toUpperCase());
+
+	public static IdTable<Node> parseNodes(File nodes, Graph graph) {
+		IdTable<Node> map = new IdTable<Node>();
 
 		try {
 			// make a reader
@@ -38,8 +62,9 @@ public class Parser {
 				double lat = asDouble(tokens[1]);
 				double lon = asDouble(tokens[2]);
 
-				Node node = new Node(nodeID, lat, lon);
+				Node node = new Node(nodeID, graph.coords);
 				map.put(nodeID, node);
+				graph.coords.setNodeLatLon(node.index, lat, lon);
 			}
 
 			br.close();
@@ -50,8 +75,33 @@ public class Parser {
 		return map;
 	}
 
-	public static Map<Integer, Road> parseRoads(File roads, Graph graph) {
-		Map<Integer, Road> map = new HashMap<Integer, Road>();
+	/**Same as parseNodes, but decodes the ids and coordinates straight out of the
+	 * mapped file without going through Strings*/
+	public static IdTable<Node> parseNodesMapped(File nodes, Graph graph) {
+		IdTable<Node> map = new IdTable<Node>();
+
+		try {
+			TabScanner in = TabScanner.map(nodes);
+
+			while (in.hasNext()) {
+				int nodeID = in.nextInt();
+				double lat = in.nextDouble();
+				double lon = in.nextDouble();
+				in.skipLine();
+
+				Node node = new Node(nodeID, graph.coords);
+				map.put(nodeID, node);
+				graph.coords.setNodeLatLon(node.index, lat, lon);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("file reading failed.");
+		}
+
+		return map;
+	}
+
+	public static IdTable<Road> parseRoads(File roads, Graph graph) {
+		IdTable<Road> map = new IdTable<Road>();
 
 		try {
 			BufferedReader br = new BufferedReader(new FileReader(roads));
@@ -72,7 +122,7 @@ public class Parser {
 				int notforpede = asInt(tokens[8]);
 				int notforbicy = asInt(tokens[8]);
 
-				Road road = new Road(roadID, type, label, city, oneway, speed,
+				Road road = new Road(graph, roadID, type, label, city, oneway, speed,
 						roadclass, notforcar, notforpede, notforbicy);
 				map.put(roadID, road);
 			}
@@ -85,8 +135,8 @@ public class Parser {
 		return map;
 	}
 
-	public static Collection<Segment> parseSegments(File segments, Graph graph) {
-		Set<Segment> set = new HashSet<Segment>();
+	public static DenseList<Segment> parseSegments(File segments, Graph graph) {
+		DenseList<Segment> set = new DenseList<Segment>();
 
 		try {
 			BufferedReader br = new BufferedReader(new FileReader(segments));
@@ -108,16 +158,82 @@ public class Parser {
 				Segment segment = new Segment(graph, roadID, length, node1ID,
 						node2ID, coords);
 
-				segment.start.getOutNeighbours().add(segment);
-				segment.end.getInNeighbours().add(segment);				//Initialize Neighbours
-				segment.end.getOutNeighbours().add(segment);
+				addNeighbours(segment);				//Initialize Neighbours
+				set.add(segment);
+			}
 
+			br.close();
+		} catch (IOException e) {
+			throw new RuntimeException("file reading failed.");
+		}
+
+		return set;
+	}
 
+	/**Same as parseSegments, but decodes each line straight out of the mapped
+	 * file. The coordinate list is read into one reused buffer.*/
+	public static DenseList<Segment> parseSegmentsMapped(File segments, Graph graph) {
+		DenseList<Segment> set = new DenseList<Segment>();
 
+		try {
+			TabScanner in = TabScanner.map(segments);
+			in.skipLine(); // throw away the top line of the file.
+
+			for (Segment segment : readSegments(in, graph, graph.coords)) {
+				segment.link();
+				addNeighbours(segment);				//Initialize Neighbours
 				set.add(segment);
 			}
+		} catch (IOException e) {
+			throw new RuntimeException("file reading failed.");
+		}
 
-			br.close();
+		return set;
+	}
+
+	/**Same as parseSegmentsMapped, but the file is cut at line boundaries into
+	 * chunks that are parsed concurrently on the given pool. Each chunk only
+	 * creates its Segments; they are linked into the Roads and Node neighbour
+	 * lists afterwards on this thread, in file order, so no Node is ever
+	 * touched by two threads.*/
+	public static DenseList<Segment> parseSegmentsParallel(File segments, Graph graph, ForkJoinPool pool) {
+		DenseList<Segment> set = new DenseList<Segment>();
+
+		try {
+			MappedByteBuffer buf = TabScanner.mapFile(segments);
+			int limit = buf.limit();
+
+			int start = 0;
+			while (start < limit && buf.get(start++) != '\n');		// throw away the top line of the file.
+
+			int chunks = Math.max(1, Math.min(pool.getParallelism() * 4, (limit - start) / MIN_CHUNK_BYTES));
+			int chunkSize = (limit - start) / chunks + 1;
+
+			List<ForkJoinTask<Chunk>> tasks = new ArrayList<ForkJoinTask<Chunk>>();
+			while (start < limit) {
+				int end = Math.min(limit, start + chunkSize);
+				while (end < limit && buf.get(end - 1) != '\n')
+					end++;										//Move the cut to the next line boundary
+
+				ByteBuffer chunk = buf.duplicate();
+				chunk.limit(end);
+				chunk.position(start);
+				Coordinates points = new Coordinates(0, (end - start) / 40);		//Merged into the Graph's below
+				tasks.add(pool.submit(() -> new Chunk(readSegments(new TabScanner(chunk), graph, points), points)));
+
+				start = end;
+			}
+
+			for (ForkJoinTask<Chunk> task : tasks) {		//Merge in file order
+				Chunk chunk = task.join();
+				int first = graph.coords.addPoints(chunk.points);
+				for (Segment segment : chunk.segments) {
+					segment.firstPoint += first;
+					segment.link();
+					addNeighbours(segment);
+					set.add(segment);
+				}
+			}
 		} catch (IOException e) {
 			throw new RuntimeException("file reading failed.");
 		}
@@ -125,6 +241,45 @@ public class Parser {
 		return set;
 	}
 
+	/**The Segments of one chunk of the segments file, with their points*/
+	private static class Chunk {
+		final List<Segment> segments;
+		final Coordinates points;
+
+		Chunk(List<Segment> segments, Coordinates points) {
+			this.segments = segments;
+			this.points = points;
+		}
+	}
+
+	/**Reads segment lines until the scanner runs out, without linking the
+	 * Segments to their Roads or Nodes. Their points are added to the given
+	 * buffer and numbered from its start.*/
+	private static List<Segment> readSegments(TabScanner in, Graph graph, Coordinates points) {
+		List<Segment> list = new ArrayList<Segment>();
+		double[] coords = new double[64];
+
+		while (in.hasNext()) {
+			int roadID = in.nextInt();
+			double length = in.nextDouble();
+			int node1ID = in.nextInt();
+			int node2ID = in.nextInt();
+
+			int count = 0;
+			while (!in.atEndOfLine()) {
+				if (count == coords.length)
+					coords = Arrays.copyOf(coords, count * 2);
+				coords[count++] = in.nextDouble();
+			}
+			in.skipLine();
+
+			list.add(new Segment(graph.roads.get(roadID), graph.nodes.get(node1ID),
+					graph.nodes.get(node2ID), length, points.addLatLon(coords, count), count / 2));
+		}
+
+		return list;
+	}
+
 	public static Collection<Restriction> parseRestrictions(File restrictions, Graph graph){
 
 		Set<Restriction> rest = new HashSet<Restriction>();
@@ -159,7 +314,9 @@ public class Parser {
 		return rest;
 	}
 
-	public static void parseTrafficLights(File lights, Map<Integer, Node> nodes){
+	/**Marks the Node closest to each traffic light as having lights, using the
+	 * Graph's NodeIndex rather than comparing every light with every Node*/
+	public static void parseTrafficLights(File lights, NodeIndex index){
 
 		if(lights!=null){
 			try {
@@ -173,15 +330,7 @@ public class Parser {
 					double lon = asDouble(tokens[1]);
 
 					Location loc = Location.newFromLatLon(lon, lat);
-					Node node = null;
-					double locDiff = 1000;
-					//Lets find closest match of location to Node
-					for(Node n : nodes.values()){
-						if(n.location.distance(loc) <= locDiff){
-							locDiff = n.location.distance(loc);
-							node = n;
-						}
-					}
+					Node node = index.nearest(loc, MAX_LIGHT_DISTANCE);		//Closest match of location to Node
 
 					if(node!=null)
 						node.setHasLights(true);  	//Set Node to have lights
@@ -291,6 +440,98 @@ public class Parser {
 		return polygons;
 	}
 
+	/**Adds a newly created Segment to the directed neighbour lists of its end
+	 * Nodes: out of the start and into the end, and the other way as well
+	 * unless its Road is one-way. These are the arcs CsrGraph is built from.*/
+	public static void addNeighbours(Segment segment) {
+		segment.start.getOutNeighbours().add(segment);
+		segment.end.getInNeighbours().add(segment);
+		if (!segment.isOneWay()) {
+			segment.end.getOutNeighbours().add(segment);
+			segment.start.getInNeighbours().add(segment);
+		}
+	}
+
+	/**Streaming replacement for parsePolygons. Reads the mapped .mp file block
+	 * by block, decoding each DataN ring (any number of them) straight into a
+	 * packed array of x,y Location coordinates. Blank lines and unknown keys are
+	 * skipped, so it doesn't rely on the exact layout between [END] and the next
+	 * [POLYGON].*/
+	public static List<Polygon> parsePolygonsStreaming(File file, List<Polygon> polygons) throws IOException {
+
+		if(file == null)
+			return polygons;
+
+		TabScanner in = TabScanner.map(file);
+
+		Polygon polygon;
+		while ((polygon = readPolygon(in)) != null) {
+			if (polygon.getRings().length > 0)
+				polygons.add(polygon);
+		}
+
+		return polygons;
+	}
+
+	/**Reads one block of a .mp file, up to and including its [END] line
+	 *
+	 * @return Polygon - the block's Polygon (with no rings if it had no DataN lines), or null if the scanner ran out first*/
+	public static Polygon readPolygon(TabScanner in) {
+
+		String type = null, label = null;
+		int endLevel = 0, cityIdx = 0;
+		List<double[]> rings = new ArrayList<double[]>();
+		double[] ring = new double[256];
+
+		while (in.hasNext()) {
+
+			if (in.accept("[END]")) {
+				in.skipLine();
+				return new Polygon(type, label, endLevel, cityIdx, rings.toArray(new double[rings.size()][]));
+			}
+			else if (in.accept("Type="))
+				type = in.nextString();
+			else if (in.accept("Label="))
+				label = in.nextString();
+			else if (in.accept("EndLevel="))
+				endLevel = in.nextInt();
+			else if (in.accept("CityIdx="))
+				cityIdx = in.nextInt();
+			else if (in.accept("Data")) {
+				in.nextInt();					//Level of detail, every level is kept
+				in.accept("=");
+
+				int count = 0;
+				while (in.accept("(")) {
+					double lat = in.nextDouble();
+					in.accept(",");
+					double lon = in.nextDouble();
+					in.accept(")");
+					in.accept(",");
+
+					if (count + 2 > ring.length)
+						ring = Arrays.copyOf(ring, ring.length * 2);
+					ring[count++] = Location.xFromLatLon(lat, lon);
+					ring[count++] = Location.yFromLatLon(lat);
+				}
+				rings.add(Arrays.copyOf(ring, count));
+			}
+
+			in.skipLine();					//[POLYGON] and anything unknown
+		}
+
+		return null;
+	}
+
+	/**Removes a Segment from the neighbour lists addNeighbours put it in,
+	 * whichever direction its Road had then*/
+	public static void removeNeighbours(Segment segment) {
+		for (Node n : new Node[] { segment.start, segment.end }) {
+			n.getOutNeighbours().removeIf(s -> s == segment);		//A loop is in its lists twice
+			n.getInNeighbours().removeIf(s -> s == segment);
+		}
+	}
+
 	private static int asInt(String str) {
 		return Integer.parseInt(str);
 	}
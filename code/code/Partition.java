@@ -0,0 +1,165 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * A multi-level cell assignment of a graph's nodes, see Partitioner: level 0
+ * has the largest cells and each level splits the cells of the one above.
+ * Cells are numbered 0.. per level, in the order the bisection reached them,
+ * so the cells inside one coarse cell have consecutive numbers.
+ *
+ * Written to a file next to the graph (like GraphSnapshot) with the checksum
+ * of the source files and the level bounds, by node id so it doesn't depend
+ * on the order the nodes were loaded in. read returns null when either has
+ * changed, and the caller partitions again.
+ */
+public class Partition {
+
+	public static final String FILENAME = "graph.partition";
+
+	/**Largest cell size of each level, coarsest first (-Dmapper.partition.levels)*/
+	public static final int[] DEFAULT_BOUNDS = parseBounds(System.getProperty("mapper.partition.levels", "16384,4096,1024,256"));
+
+	private static final int MAGIC = 0x41525050;		//"ARPP"
+	private static final int VERSION = 1;
+
+	private final int[] bounds;
+	private final int[][] cells;						//Level -> node index -> cell
+	private final int[] counts;							//Cells per level
+
+	Partition(int[] bounds, int[][] cells, int[] counts) {
+		this.bounds = bounds;
+		this.cells = cells;
+		this.counts = counts;
+	}
+
+	/**Parses a comma separated list of cell sizes, checking they get smaller*/
+	public static int[] parseBounds(String levels) {
+		String[] parts = levels.split(",");
+		int[] bounds = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			bounds[i] = Integer.parseInt(parts[i].trim());
+			if (bounds[i] < 1 || (i > 0 && bounds[i] >= bounds[i - 1]))
+				throw new IllegalArgumentException("Cell sizes must be positive and decreasing: " + levels);
+		}
+		return bounds;
+	}
+
+	public int levels() {
+		return bounds.length;
+	}
+
+	/**Returns the largest cell size allowed on the level*/
+	public int bound(int level) {
+		return bounds[level];
+	}
+
+	public int cellCount(int level) {
+		return counts[level];
+	}
+
+	/**Returns the cell of a node (by dense index) on the level*/
+	public int cell(int level, int node) {
+		return cells[level][node];
+	}
+
+	//===========================REPORT============================
+
+	/**Prints the number of cells, the cut size and the balance of every level.
+	 * The cut is the number of neighbouring node pairs in different cells, the
+	 * balance the largest cell over the average one.*/
+	public void report(RoutingGraph g, PrintStream out) {
+		long[] edges = Partitioner.edges(g);
+		out.printf("%d nodes, %d node pairs%n", g.nodeCount(), edges.length);
+		out.printf("%-6s %8s %8s %8s %8s %8s %8s%n", "level", "bound", "cells", "cut", "cut %", "largest", "balance");
+
+		for (int level = 0; level < bounds.length; level++) {
+			int[] cell = cells[level];
+			int cut = 0;
+			for (long e : edges) {
+				if (cell[(int) (e >>> 32)] != cell[(int) e])
+					cut++;
+			}
+			int[] sizes = new int[counts[level]];
+			for (int c : cell)
+				sizes[c]++;
+			int largest = 0;
+			for (int s : sizes)
+				largest = Math.max(largest, s);
+			double average = (double) g.nodeCount() / Math.max(1, counts[level]);
+
+			out.printf("%-6d %8d %8d %8d %8.2f %8d %8.2f%n", level, bounds[level], counts[level], cut,
+					100.0 * cut / Math.max(1, edges.length), largest, largest / average);
+		}
+	}
+
+	//===========================FILE==============================
+
+	/**Writes the partition of the graph's nodes to the given file
+	 *
+	 * @param long checksum - checksum of the source files, see GraphSnapshot.checksum*/
+	public void write(RoutingGraph g, File file, long checksum) throws IOException {
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(checksum);
+			out.writeInt(bounds.length);
+			for (int b : bounds)
+				out.writeInt(b);
+
+			int n = g.nodeCount();
+			out.writeInt(n);
+			for (int i = 0; i < n; i++)
+				out.writeInt(g.nodeID(i));
+			for (int level = 0; level < bounds.length; level++) {
+				out.writeInt(counts[level]);
+				for (int i = 0; i < n; i++)
+					out.writeInt(cells[level][i]);
+			}
+		}
+	}
+
+	/**Reads a partition written by write for the same source files and bounds
+	 *
+	 * @return Partition - null if the file is missing, stale, for other bounds or for other nodes*/
+	public static Partition read(RoutingGraph g, File file, long checksum, int[] bounds) throws IOException {
+
+		if (file == null || !file.exists())
+			return null;
+
+		ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		if (in.remaining() < 20 || in.getInt() != MAGIC || in.getInt() != VERSION || in.getLong() != checksum)
+			return null;
+		int[] stored = new int[in.getInt()];
+		for (int i = 0; i < stored.length; i++)
+			stored[i] = in.getInt();
+		if (!Arrays.equals(stored, bounds))
+			return null;
+
+		int n = in.getInt();
+		if (n != g.nodeCount())
+			return null;
+		int[] index = new int[n];					//Position in the file -> node index now
+		for (int i = 0; i < n; i++) {
+			index[i] = g.indexOf(in.getInt());
+			if (index[i] < 0)
+				return null;
+		}
+
+		int[][] cells = new int[bounds.length][n];
+		int[] counts = new int[bounds.length];
+		for (int level = 0; level < bounds.length; level++) {
+			counts[level] = in.getInt();
+			for (int i = 0; i < n; i++)
+				cells[level][index[i]] = in.getInt();
+		}
+		return new Partition(bounds, cells, counts);
+	}
+}
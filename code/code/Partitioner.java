@@ -0,0 +1,245 @@
+import java.util.Arrays;
+
+/**
+ * Splits a road graph into nested cells by recursive inertial flow bisection.
+ * For each of a few directions (east, north and the two diagonals) the nodes
+ * of a cell are sorted by their position along that direction, the first and
+ * last SEED_FRACTION of them are joined to a source and a sink, and a unit
+ * capacity max-flow between them gives a minimum cut; the direction with the
+ * smallest cut wins, the better balanced one on a tie. The seeds keep both
+ * sides at least SEED_FRACTION of the cell.
+ *
+ * The roads are treated as undirected and each pair of neighbouring nodes is
+ * one edge of capacity 1, so a cut size is the number of node pairs whose
+ * road links it crosses. Cells are bisected until they fit the size bound of
+ * each level in turn, coarsest first, so every cell is inside one cell of
+ * each coarser level.
+ *
+ * Not thread safe, one Partitioner per run.
+ */
+public class Partitioner {
+
+	/**Fraction of a cell's nodes at each end of a direction used as sources and sinks*/
+	public static final double SEED_FRACTION = 0.25;
+
+	private static final double[][] DIRECTIONS = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+
+	private final RoutingGraph g;
+	private final int n;
+	private final int[] adjOffsets, adjNodes, adjEdges;		//Undirected adjacency, with the edge of each entry
+	private final int[] edgeFrom, edgeTo;					//Flow on an edge is counted from edgeFrom to edgeTo
+	private final int[] flow;
+
+	private final int[] inCell;								//Stamp of the cell being split
+	private final int[] visited;							//Stamp of the BFS that reached the node
+	private final int[] parentEdge;
+	private final byte[] role;								//SOURCE, SINK or 0, within the current cell
+	private int cellStamp, bfsStamp;
+
+	private static final byte SOURCE = 1, SINK = 2;
+
+	public Partitioner(RoutingGraph g) {
+		this.g = g;
+		this.n = g.nodeCount();
+
+		long[] edges = edges(g);
+		edgeFrom = new int[edges.length];
+		edgeTo = new int[edges.length];
+		flow = new int[edges.length];
+		adjOffsets = new int[n + 1];
+		for (long e : edges) {
+			adjOffsets[(int) (e >>> 32) + 1]++;
+			adjOffsets[(int) e + 1]++;
+		}
+		for (int i = 0; i < n; i++)
+			adjOffsets[i + 1] += adjOffsets[i];
+		adjNodes = new int[2 * edges.length];
+		adjEdges = new int[2 * edges.length];
+		int[] next = Arrays.copyOf(adjOffsets, n);
+		for (int e = 0; e < edges.length; e++) {
+			int a = (int) (edges[e] >>> 32), b = (int) edges[e];
+			edgeFrom[e] = a;
+			edgeTo[e] = b;
+			adjNodes[next[a]] = b;
+			adjEdges[next[a]++] = e;
+			adjNodes[next[b]] = a;
+			adjEdges[next[b]++] = e;
+		}
+
+		inCell = new int[n];
+		visited = new int[n];
+		parentEdge = new int[n];
+		role = new byte[n];
+	}
+
+	/**Returns every pair of neighbouring nodes once, as smaller index << 32 | larger index, sorted*/
+	static long[] edges(RoutingGraph g) {
+		long[] keys = new long[g.arcCount()];
+		int count = 0;
+		for (int a = 0; a < g.arcCount(); a++) {
+			int s = g.source(a), t = g.target(a);
+			if (s != t)
+				keys[count++] = s < t ? (long) s << 32 | t : (long) t << 32 | s;
+		}
+		Arrays.sort(keys, 0, count);
+		int unique = 0;
+		for (int i = 0; i < count; i++) {
+			if (unique == 0 || keys[i] != keys[unique - 1])
+				keys[unique++] = keys[i];
+		}
+		return Arrays.copyOf(keys, unique);
+	}
+
+	/**Partitions the whole graph
+	 *
+	 * @param int[] bounds - largest cell size of each level, coarsest (largest) first
+	 * @return Partition - the cell of every node at every level*/
+	public Partition partition(int[] bounds) {
+		int[][] cells = new int[bounds.length][n];
+		int[] counts = new int[bounds.length];
+		int[] nodes = new int[n];
+		for (int i = 0; i < n; i++)
+			nodes[i] = i;
+		split(nodes, 0, n, 0, bounds, cells, counts);
+		return new Partition(bounds, cells, counts);
+	}
+
+	/**Gives nodes[from..to) a cell on every level it fits, then bisects it for the finer levels*/
+	private void split(int[] nodes, int from, int to, int level, int[] bounds, int[][] cells, int[] counts) {
+		while (level < bounds.length && to - from <= bounds[level]) {
+			int cell = counts[level]++;
+			for (int i = from; i < to; i++)
+				cells[level][nodes[i]] = cell;
+			level++;
+		}
+		if (level == bounds.length)
+			return;
+
+		int mid = bisect(nodes, from, to);
+		split(nodes, from, mid, level, bounds, cells, counts);
+		split(nodes, mid, to, level, bounds, cells, counts);
+	}
+
+	/**Splits nodes[from..to) in place along the best of the directions
+	 *
+	 * @return int - where the second side starts*/
+	int bisect(int[] nodes, int from, int to) {
+
+		int size = to - from;
+		cellStamp++;
+		for (int i = from; i < to; i++)
+			inCell[nodes[i]] = cellStamp;
+
+		int seeds = Math.max(1, (int) (size * SEED_FRACTION));
+		boolean[] best = null;
+		int bestCut = Integer.MAX_VALUE, bestSmaller = -1;
+
+		long[] order = new long[size];								//Position key << 32 | i, see sortKey
+		for (double[] d : DIRECTIONS) {
+			for (int i = 0; i < size; i++)
+				order[i] = sortKey(g.x(nodes[from + i]) * d[0] + g.y(nodes[from + i]) * d[1], i);
+			Arrays.sort(order);
+
+			for (int i = 0; i < size; i++)
+				role[nodes[from + (int) order[i]]] = i < seeds ? SOURCE : i >= size - seeds ? SINK : 0;
+
+			int cut = maxFlow(nodes, from, to, bestCut);
+			if (cut < 0)
+				continue;										//Already worse than the best direction
+
+			int sourceSide = 0;
+			boolean[] side = new boolean[size];
+			for (int i = 0; i < size; i++) {
+				side[i] = visited[nodes[from + i]] == bfsStamp;	//Reachable from the sources in the residual graph
+				if (side[i])
+					sourceSide++;
+			}
+			int smaller = Math.min(sourceSide, size - sourceSide);
+			if (cut < bestCut || (cut == bestCut && smaller > bestSmaller)) {
+				bestCut = cut;
+				bestSmaller = smaller;
+				best = side;
+			}
+		}
+
+		int[] sorted = new int[size];
+		int front = 0, back = size;
+		for (int i = 0; i < size; i++) {
+			if (best[i])
+				sorted[front++] = nodes[from + i];
+			else
+				sorted[--back] = nodes[from + i];
+		}
+		System.arraycopy(sorted, 0, nodes, from, size);
+		return from + front;
+	}
+
+	/**Returns a key that sorts by position, then by i, so a cell sorts as a
+	 * primitive long[]: the float bits of the position, with the magnitude bits
+	 * of negatives flipped so they compare as ints, above the index*/
+	static long sortKey(double position, int i) {
+		int bits = Float.floatToIntBits((float) position);
+		bits ^= (bits >> 31) & Integer.MAX_VALUE;
+		return (long) bits << 32 | i;
+	}
+
+	/**Augments shortest paths from the sources to the sinks until there are none,
+	 * leaving the last search's reached nodes (the source side) marked with bfsStamp
+	 *
+	 * @return int - the flow, or -1 once it is over limit*/
+	private int maxFlow(int[] nodes, int from, int to, int limit) {
+
+		for (int i = from; i < to; i++) {
+			int u = nodes[i];
+			for (int p = adjOffsets[u]; p < adjOffsets[u + 1]; p++)
+				flow[adjEdges[p]] = 0;
+		}
+
+		int[] queue = new int[to - from];
+		int total = 0;
+		while (true) {
+			bfsStamp++;
+			int head = 0, tail = 0, reachedSink = -1;
+			for (int i = from; i < to; i++) {
+				if (role[nodes[i]] == SOURCE) {
+					visited[nodes[i]] = bfsStamp;
+					parentEdge[nodes[i]] = -1;
+					queue[tail++] = nodes[i];
+				}
+			}
+
+			while (head < tail && reachedSink < 0) {
+				int u = queue[head++];
+				for (int p = adjOffsets[u]; p < adjOffsets[u + 1]; p++) {
+					int v = adjNodes[p], e = adjEdges[p];
+					if (inCell[v] != cellStamp || visited[v] == bfsStamp || residual(e, u) <= 0)
+						continue;
+					visited[v] = bfsStamp;
+					parentEdge[v] = e;
+					if (role[v] == SINK) {
+						reachedSink = v;
+						break;
+					}
+					queue[tail++] = v;
+				}
+			}
+
+			if (reachedSink < 0)
+				return total;
+			if (++total > limit)
+				return -1;
+
+			for (int v = reachedSink; parentEdge[v] >= 0; ) {		//Push one unit back along the path
+				int e = parentEdge[v];
+				int u = edgeFrom[e] == v ? edgeTo[e] : edgeFrom[e];
+				flow[e] += edgeFrom[e] == u ? 1 : -1;
+				v = u;
+			}
+		}
+	}
+
+	/**Returns the capacity left on edge e going out of node u*/
+	private int residual(int e, int u) {
+		return edgeFrom[e] == u ? 1 - flow[e] : 1 + flow[e];
+	}
+}
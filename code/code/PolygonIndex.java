@@ -0,0 +1,217 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lazy alternative to keeping every Polygon in memory. The .mp file is scanned
+ * once to record where each [POLYGON] block starts and ends and its bounding
+ * box; a block's geometry is only decoded when its box intersects the area
+ * being drawn. The boxes are bucketed in a uniform grid over the whole map,
+ * so a repaint only looks at the blocks in the cells it covers.
+ *
+ * Decoded Polygons are kept in an LRU cache so the heap doesn't grow over a
+ * long session. The cache always holds at least the last visible set: when a
+ * view shows more Polygons than the cache size (zoomed out, all of them) it
+ * keeps them all, as if they were loaded eagerly, instead of decoding every
+ * one again on each repaint, and shrinks back once the view does.
+ */
+public class PolygonIndex {
+
+	public static final int DEFAULT_CACHE_SIZE = 2048;
+
+	private final MappedByteBuffer file;
+	private int count;
+	private int[] starts = new int[1024];
+	private int[] ends = new int[1024];
+	private double[] bounds = new double[4 * 1024];		//minX, minY, maxX, maxY per block
+
+	private int columns, rows;
+	private double gridX, gridY, cellWidth, cellHeight;
+	private int[] cellOffsets;							//columns * rows + 1 entries, into cellBlocks
+	private int[] cellBlocks;							//Blocks whose box overlaps each cell
+	private int[] seen;									//Block -> stamp of the last query that found it
+	private int stamp;
+
+	private final int cacheSize;
+	private int capacity;								//cacheSize, or the last visible set if that is larger
+	private final Map<Integer, Polygon> cache;
+
+	public PolygonIndex(File polygons) throws IOException {
+		this(polygons, DEFAULT_CACHE_SIZE);
+	}
+
+	/**Scans the whole file once to build the index
+	 *
+	 * @param File polygons - a polygon-shapes.mp file
+	 * @param int cacheSize - most decoded Polygons kept at once*/
+	public PolygonIndex(File polygons, final int cacheSize) throws IOException {
+		this.file = TabScanner.mapFile(polygons);
+		this.cacheSize = cacheSize;
+		this.capacity = cacheSize;
+		this.cache = new LinkedHashMap<Integer, Polygon>(cacheSize * 4 / 3 + 1, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Integer, Polygon> eldest) {
+				return size() > capacity;					//Evict the least recently drawn
+			}
+		};
+
+		TabScanner in = new TabScanner(file);
+		while (true) {
+			int start = in.position();
+			Polygon polygon = Parser.readPolygon(in);
+			if (polygon == null)
+				break;
+			if (polygon.getRings().length > 0)
+				add(start, in.position(), polygon.getRings());
+		}
+		buildGrid();
+	}
+
+	/**Returns the Polygons whose bounding box intersects the given area, in
+	 * file order (the order they are drawn in), decoding any that aren't cached*/
+	public synchronized List<Polygon> visible(double minX, double minY, double maxX, double maxY) {
+		List<Polygon> visible = new ArrayList<Polygon>();
+		if (count == 0)
+			return visible;
+
+		int[] found = new int[Math.min(count, 64)];
+		int hits = 0;
+		stamp++;
+		for (int row = row(minY), lastRow = row(maxY); row <= lastRow; row++) {
+			for (int cell = row * columns + column(minX), last = row * columns + column(maxX); cell <= last; cell++) {
+				for (int p = cellOffsets[cell]; p < cellOffsets[cell + 1]; p++) {
+					int i = cellBlocks[p], b = 4 * i;
+					if (seen[i] == stamp)
+						continue;							//Already found in another cell
+					seen[i] = stamp;
+					if (bounds[b] > maxX || bounds[b + 2] < minX || bounds[b + 1] > maxY || bounds[b + 3] < minY)
+						continue;
+					if (hits == found.length)
+						found = Arrays.copyOf(found, Math.min(count, hits * 2));
+					found[hits++] = i;
+				}
+			}
+		}
+		Arrays.sort(found, 0, hits);
+
+		resize(Math.max(cacheSize, hits));
+		for (int h = 0; h < hits; h++) {
+			Polygon polygon = cache.get(found[h]);
+			if (polygon == null) {
+				polygon = decode(found[h]);
+				cache.put(found[h], polygon);
+			}
+			visible.add(polygon);
+		}
+		return visible;
+	}
+
+	/**Sets the cache capacity, evicting the least recently drawn Polygons if it shrank*/
+	private void resize(int newCapacity) {
+		capacity = newCapacity;
+		Iterator<Integer> eldest = cache.keySet().iterator();
+		while (cache.size() > capacity) {
+			eldest.next();
+			eldest.remove();
+		}
+	}
+
+	/**Number of Polygons in the file*/
+	public int size() {
+		return count;
+	}
+
+	/**Number of Polygons currently decoded*/
+	public synchronized int cached() {
+		return cache.size();
+	}
+
+	private Polygon decode(int i) {
+		ByteBuffer block = file.duplicate();
+		block.limit(ends[i]);
+		block.position(starts[i]);
+		return Parser.readPolygon(new TabScanner(block));
+	}
+
+	/**Buckets the block bounds in a grid of about one block per cell, every
+	 * block is listed in each cell its box overlaps*/
+	private void buildGrid() {
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; i++) {
+			minX = Math.min(minX, bounds[4 * i]);
+			minY = Math.min(minY, bounds[4 * i + 1]);
+			maxX = Math.max(maxX, bounds[4 * i + 2]);
+			maxY = Math.max(maxY, bounds[4 * i + 3]);
+		}
+		columns = rows = Math.max(1, (int) Math.sqrt(count));
+		gridX = count == 0 ? 0 : minX;
+		gridY = count == 0 ? 0 : minY;
+		cellWidth = maxX > minX ? (maxX - minX) / columns : 1;
+		cellHeight = maxY > minY ? (maxY - minY) / rows : 1;
+
+		cellOffsets = new int[columns * rows + 1];
+		for (int pass = 0; pass < 2; pass++) {				//Count the entries of each cell, then fill them in
+			int[] next = pass == 0 ? null : Arrays.copyOf(cellOffsets, cellOffsets.length - 1);
+			for (int i = 0; i < count; i++) {
+				int b = 4 * i;
+				for (int row = row(bounds[b + 1]), lastRow = row(bounds[b + 3]); row <= lastRow; row++) {
+					for (int cell = row * columns + column(bounds[b]), last = row * columns + column(bounds[b + 2]); cell <= last; cell++) {
+						if (pass == 0)
+							cellOffsets[cell + 1]++;
+						else
+							cellBlocks[next[cell]++] = i;
+					}
+				}
+			}
+			if (pass == 0) {
+				for (int c = 0; c < columns * rows; c++)
+					cellOffsets[c + 1] += cellOffsets[c];
+				cellBlocks = new int[cellOffsets[columns * rows]];
+			}
+		}
+		seen = new int[count];
+	}
+
+	/**Returns the grid column of an x coordinate, clamped to the grid*/
+	private int column(double x) {
+		return (int) Math.max(0, Math.min(columns - 1, Math.floor((x - gridX) / cellWidth)));
+	}
+
+	private int row(double y) {
+		return (int) Math.max(0, Math.min(rows - 1, Math.floor((y - gridY) / cellHeight)));
+	}
+
+	private void add(int start, int end, double[][] rings) {
+		if (count == starts.length) {
+			starts = Arrays.copyOf(starts, count * 2);
+			ends = Arrays.copyOf(ends, count * 2);
+			bounds = Arrays.copyOf(bounds, count * 8);
+		}
+
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (double[] ring : rings) {
+			for (int j = 0; j < ring.length; j += 2) {
+				minX = Math.min(minX, ring[j]);
+				maxX = Math.max(maxX, ring[j]);
+				minY = Math.min(minY, ring[j + 1]);
+				maxY = Math.max(maxY, ring[j + 1]);
+			}
+		}
+
+		starts[count] = start;
+		ends[count] = end;
+		bounds[4 * count] = minX;
+		bounds[4 * count + 1] = minY;
+		bounds[4 * count + 2] = maxX;
+		bounds[4 * count + 3] = maxY;
+		count++;
+	}
+}
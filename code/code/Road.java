@@ -1,8 +1,5 @@
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
 
 /**
  * Road represents ... a road ... in our graph, which is some metadata and a
@@ -11,45 +8,51 @@ import java.util.Map;
  *
  * @author tony
  */
-public class Road {
+public class Road implements DenseList.Indexed {
 	public final int roadID;
-	public final String name, city;
-	public final int oneWay;
-	public final int speed;
-	public final int roadClass;
+	public String name, city;						//Shared instances from the Graph's SymbolTables
+	public int nameID, cityID;						//Their ids in those tables, see rename
+	public int oneWay;
+	public int speed;
+	public int roadClass;
 	public final Collection<Segment> components;
+	int index = -1;									//Dense index in Graph.roads, see IdTable
 
-	private List<Road> roads;
-
-	public Road(int roadID, int type, String label, String city, int oneway,
+	public Road(Graph graph, int roadID, int type, String label, String city, int oneway,
 			int speed, int roadclass, int notforcar, int notforpede,
 			int notforbicy) {
 		this.roadID = roadID;
-		this.city = city;
-		this.name = label;
+		rename(graph, label, city);
 		this.components = new HashSet<Segment>();
 		this.oneWay = oneway;
 		this.speed = speed;
 		this.roadClass = roadclass;
-		this.roads = new ArrayList<Road>();
 	}
 
-	public void addSegment(Segment seg) {
-		components.add(seg);
+	/**Sets the name and city, interning both in the Graph's SymbolTables*/
+	public void rename(Graph graph, String label, String city) {
+		this.nameID = graph.roadNames.intern(label);
+		this.cityID = graph.cities.intern(city);
+		this.name = graph.roadNames.get(nameID);
+		this.city = graph.cities.get(cityID);
 	}
 
-	/**Get all Roads associated with this Road
-	 *
-	 * @param Map<Integer Road> mainRoads
-	 * @return List<Road> - list of Roads*/
-	public List<Road> getAllRoads(Map<Integer, Road> mainRoads){
+	@Override
+	public int getIndex() {
+		return index;
+	}
 
-		for(Road r: mainRoads.values()){					//Go through all Roads, get ones that have equal Name
-			if(r.name.equals(this.name))
-				roads.add(r);
-		}
+	@Override
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
+	public void addSegment(Segment seg) {
+		components.add(seg);
+	}
 
-		return roads;
+	public void removeSegment(Segment seg) {
+		components.remove(seg);
 	}
 
 
@@ -0,0 +1,87 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds every Road with a given name, or a given name and city, without
+ * looking at the other Roads. A Road in the data is usually many pieces with
+ * the same name, each its own roadID, and highlighting one means finding all
+ * of them.
+ *
+ * The Roads are sorted by (name id, city id, roadID), see Road.rename, so the
+ * Roads of a name are one range of the array, found through an offset per
+ * name id, and those of a name and city a range within that.
+ *
+ * Built by Graph.getRoadNameIndex and rebuilt after a delta adds, renames or
+ * removes a Road.
+ */
+public class RoadNameIndex {
+
+	private final Road[] sorted;
+	private final int[] nameOffsets;			//Name id -> first position in sorted, names + 1 entries
+	private final SymbolTable names, cities;
+
+	private RoadNameIndex(Road[] sorted, int[] nameOffsets, SymbolTable names, SymbolTable cities) {
+		this.sorted = sorted;
+		this.nameOffsets = nameOffsets;
+		this.names = names;
+		this.cities = cities;
+	}
+
+	/**Sorts the Roads by name and city*/
+	public static RoadNameIndex build(IdTable<Road> roads, SymbolTable names, SymbolTable cities) {
+
+		Road[] sorted = roads.values().toArray(new Road[0]);
+		Arrays.sort(sorted, (a, b) -> a.nameID != b.nameID ? Integer.compare(a.nameID, b.nameID)
+				: a.cityID != b.cityID ? Integer.compare(a.cityID, b.cityID) : Integer.compare(a.roadID, b.roadID));
+
+		int[] offsets = new int[names.size() + 1];
+		for (Road r : sorted)
+			offsets[r.nameID + 1]++;
+		for (int i = 0; i < names.size(); i++)
+			offsets[i + 1] += offsets[i];
+		return new RoadNameIndex(sorted, offsets, names, cities);
+	}
+
+	/**Returns the Roads with the given name id, in every city*/
+	public List<Road> withName(int nameID) {
+		if (nameID < 0 || nameID + 1 >= nameOffsets.length)
+			return Collections.emptyList();
+		return range(nameOffsets[nameID], nameOffsets[nameID + 1]);
+	}
+
+	/**Returns the Roads with the given name and city ids*/
+	public List<Road> withName(int nameID, int cityID) {
+		if (nameID < 0 || nameID + 1 >= nameOffsets.length)
+			return Collections.emptyList();
+
+		int lo = nameOffsets[nameID], hi = nameOffsets[nameID + 1];
+		int from = firstCity(lo, hi, cityID), to = firstCity(from, hi, cityID + 1);
+		return range(from, to);
+	}
+
+	/**Returns the Roads with the given name in every city, or only in the given city if it isn't null*/
+	public List<Road> withName(String name, String city) {
+		int nameID = names.idOf(name);
+		if (city == null)
+			return withName(nameID);
+		int cityID = cities.idOf(city);
+		return cityID < 0 ? Collections.<Road>emptyList() : withName(nameID, cityID);
+	}
+
+	/**Returns the first position in lo .. hi with a city id of at least cityID*/
+	private int firstCity(int lo, int hi, int cityID) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sorted[mid].cityID < cityID)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	private List<Road> range(int from, int to) {
+		return Collections.unmodifiableList(Arrays.asList(sorted).subList(from, to));
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * What the searches need to know about a road graph, by dense node index and
+ * arc number: the directed arcs out of and into each node, their lengths and
+ * travel times, node positions, traffic lights and turn restrictions.
+ *
+ * CsrGraph implements it with Java arrays next to the Node objects, and
+ * OffHeapGraph with buffers outside the Java heap, so AStarSearch and
+ * Components run on either.
+ */
+public interface RoutingGraph {
+
+	int nodeCount();
+
+	int arcCount();
+
+	/**Returns the first arc leaving the node, they run up to (not including) end(node)*/
+	int begin(int node);
+
+	int end(int node);
+
+	/**Returns the first position of the node's incoming arcs, see inArc; they run up to inEnd(node)*/
+	int inBegin(int node);
+
+	int inEnd(int node);
+
+	/**Returns the arc at the given position of the incoming lists*/
+	int inArc(int position);
+
+	int source(int arc);
+
+	int target(int arc);
+
+	/**Returns the length of the arc in km*/
+	double length(int arc);
+
+	/**Returns the time the arc takes at the speed limit, plus AStarSearch.LIGHT_DELAY
+	 * if its head has traffic lights, in seconds*/
+	double time(int arc);
+
+	int roadID(int arc);
+
+	boolean hasLights(int node);
+
+	/**Returns true if turning from the first arc into the second is not allowed*/
+	boolean isTurnRestricted(int inArc, int outArc);
+
+	double x(int node);
+
+	double y(int node);
+
+	/**Returns a lower bound on the road distance between two nodes, in km*/
+	double distanceBound(int from, int to);
+
+	/**Returns the id the node has in the data files*/
+	int nodeID(int node);
+
+	/**Returns the dense index of the node with the given file id, or -1*/
+	int indexOf(int nodeID);
+}
@@ -0,0 +1,107 @@
+import java.util.Arrays;
+
+/**
+ * The per-query state of a graph search (best cost so far, the arc a node was
+ * reached by, whether it is settled, a DFS depth) in arrays indexed by dense
+ * Node index, instead of in fields on the shared Nodes. Each thread reuses
+ * its own workspace, see forThread, so any number of searches can run at once
+ * against one Graph as long as no delta is applied meanwhile.
+ *
+ * Starting a query doesn't clear the arrays: every entry is stamped with the
+ * generation that wrote it, and entries from an older generation read as
+ * unreached. A new query just moves to the next generation.
+ */
+public class SearchWorkspace {
+
+	public static final double UNREACHED = Double.POSITIVE_INFINITY;
+
+	private static final ThreadLocal<SearchWorkspace> LOCAL = ThreadLocal.withInitial(SearchWorkspace::new);
+	private static final ThreadLocal<SearchWorkspace> BACKWARD = ThreadLocal.withInitial(SearchWorkspace::new);
+
+	private int generation;
+	private int[] reached = new int[0];			//Generation that set cost and arc
+	private int[] settled = new int[0];			//Generation that settled the node
+	private double[] cost = new double[0];
+	private int[] arc = new int[0];
+	private int[] depth = new int[0];			//Only meaningful for reached nodes
+	private int settledCount;					//Nodes settled in this query
+
+	/**Returns this thread's workspace, cleared for a new query over nodeCount nodes*/
+	public static SearchWorkspace forThread(int nodeCount) {
+		SearchWorkspace workspace = LOCAL.get();
+		workspace.start(nodeCount);
+		return workspace;
+	}
+
+	/**Returns this thread's second workspace, for the backward half of a bidirectional search*/
+	public static SearchWorkspace backwardForThread(int nodeCount) {
+		SearchWorkspace workspace = BACKWARD.get();
+		workspace.start(nodeCount);
+		return workspace;
+	}
+
+	/**Starts a new query, growing the arrays if the graph has more nodes than last time*/
+	public void start(int nodeCount) {
+		if (reached.length < nodeCount) {
+			int capacity = Math.max(nodeCount, reached.length + (reached.length >> 1));
+			reached = new int[capacity];
+			settled = new int[capacity];
+			cost = new double[capacity];
+			arc = new int[capacity];
+			depth = new int[capacity];
+			generation = 0;
+		}
+		settledCount = 0;
+		if (++generation == Integer.MAX_VALUE) {		//Stamps would wrap, really clear them once
+			Arrays.fill(reached, 0);
+			Arrays.fill(settled, 0);
+			generation = 1;
+		}
+	}
+
+	public boolean isReached(int node) {
+		return reached[node] == generation;
+	}
+
+	/**Returns the best cost found to the node in this query, or UNREACHED*/
+	public double cost(int node) {
+		return reached[node] == generation ? cost[node] : UNREACHED;
+	}
+
+	/**Returns the arc the node was reached by, -1 for the start or an unreached node*/
+	public int arc(int node) {
+		return reached[node] == generation ? arc[node] : -1;
+	}
+
+	/**Records a (better) way to reach the node*/
+	public void reach(int node, double cost, int arc) {
+		reached[node] = generation;
+		this.cost[node] = cost;
+		this.arc[node] = arc;
+	}
+
+	public boolean isSettled(int node) {
+		return settled[node] == generation;
+	}
+
+	public void settle(int node) {
+		settled[node] = generation;
+		settledCount++;
+	}
+
+	/**Returns how many nodes the current query has settled, to compare searches*/
+	public int settledCount() {
+		return settledCount;
+	}
+
+	/**Returns the depth the node was given, only valid once it is reached*/
+	public int depth(int node) {
+		return depth[node];
+	}
+
+	/**Marks the node as reached at the given depth, for depth first searches*/
+	public void setDepth(int node, int depth) {
+		reached[node] = generation;
+		this.depth[node] = depth;
+	}
+}
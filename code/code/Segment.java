@@ -1,87 +1,91 @@
-import java.awt.Color;
-import java.awt.Graphics;
-import java.awt.Point;
-
 /**
  * A Segment is the most interesting class making up our graph, and represents
  * an edge between two Nodes. It knows the Road it belongs to as well as the
- * Nodes it joins, and contains a series of Locations that make up the length of
- * the Segment and can be used to render it.
+ * Nodes it joins, and refers to the series of points that make up the length
+ * of the Segment, which can be used to render it (see GraphRenderer). The
+ * points are kept in the Graph's Coordinates, from firstPoint on.
  *
  * @author tony
  */
-public class Segment {
+public class Segment implements DenseList.Indexed {
 
 	public final Road road;
 	public final Node start, end;
-	public final double length;
-	public final Location[] points;
-
-	private double pathDistance;
-	private double pathTime;
-	private Color color;
+	public double length;					//Changed in place by a delta, see reshape
+	int firstPoint;							//First of its points in the Graph's Coordinates
+	public int pointCount;
+	int index = -1;							//Dense index in Graph.segments
 
 	public Segment(Graph graph, int roadID, double length, int node1ID,
 			int node2ID, double[] coords) {
+		this(graph.roads.get(roadID), graph.nodes.get(node1ID), graph.nodes
+				.get(node2ID), length, graph.coords.addLatLon(coords, coords.length), coords.length / 2);
+		link();
+	}
 
-		this.road = graph.roads.get(roadID);
-		this.start = graph.nodes.get(node1ID);
-		this.end = graph.nodes.get(node2ID);
+	/**Creates a Segment whose points are already in a Coordinates buffer.
+	 * Unlike the constructor above this doesn't touch the Road or Nodes, so
+	 * Segments can be created on several threads at once; call link()
+	 * afterwards on a single thread.*/
+	public Segment(Road road, Node start, Node end, double length, int firstPoint, int pointCount) {
+		this.road = road;
+		this.start = start;
+		this.end = end;
 		this.length = length;
+		this.firstPoint = firstPoint;
+		this.pointCount = pointCount;
+	}
 
-		points = new Location[coords.length / 2];
-		for (int i = 0; i < points.length; i++) {
-			points[i] = Location
-					.newFromLatLon(coords[2 * i], coords[2 * i + 1]);
-		}
-
+	/**Adds this Segment to its Road and both of its Nodes*/
+	public void link() {
 		this.road.addSegment(this);
 		this.start.addSegment(this);
 		this.end.addSegment(this);
-		this.color = Mapper.SEGMENT_COLOUR;
 	}
 
-	public void draw(Graphics g, Location origin, double scale) {
-		for (int i = 1; i < points.length; i++) {
-			Point p = points[i - 1].asPoint(origin, scale);
-			Point q = points[i].asPoint(origin, scale);
-			g.drawLine(p.x, p.y, q.x, q.y);
-		}
-	}
-
-	public Node getStart() {
-		return start;
+	/**Gives the Segment a new length and points (already in the Graph's
+	 * Coordinates), keeping its Road, Nodes and place in every list*/
+	void reshape(double length, int firstPoint, int pointCount) {
+		this.length = length;
+		this.firstPoint = firstPoint;
+		this.pointCount = pointCount;
 	}
 
-	public Node getEnd() {
-		return end;
+	/**Returns true if the Segment can only be driven from start to end*/
+	public boolean isOneWay() {
+		return road.oneWay == 1;
 	}
 
-	public double getPathDistance() {
-		return pathDistance;
+	/**Returns the end of the Segment that isn't the given Node (the Node itself for a loop)*/
+	public Node other(Node n) {
+		return n == start ? end : start;
 	}
 
-	public void setPathDistance(double pathDistance) {
-		this.pathDistance = pathDistance;
+	/**Removes this Segment from its Road and both of its Nodes, the reverse of link()*/
+	public void unlink() {
+		this.road.removeSegment(this);
+		this.start.removeSegment(this);
+		this.end.removeSegment(this);
 	}
 
-	public double getPathTime() {
-		return pathTime;
+	@Override
+	public int getIndex() {
+		return index;
 	}
 
-	public void setPathTime(double pathTime) {
-		this.pathTime = pathTime;
+	@Override
+	public void setIndex(int index) {
+		this.index = index;
 	}
 
-	public Color getColor() {
-		return color;
+	public Node getStart() {
+		return start;
 	}
 
-	public void setColor(Color color) {
-		this.color = color;
+	public Node getEnd() {
+		return end;
 	}
 
-
 }
 
 // code for COMP261 assignments
\ No newline at end of file
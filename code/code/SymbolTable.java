@@ -0,0 +1,45 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives every distinct String (a road name, a city) one shared instance and a
+ * small integer id, numbered from 0 in the order they were first seen. Many
+ * Roads share a name and there are only a few dozen cities, so this keeps one
+ * copy of each, and lets names be compared by id (or by identity) instead of
+ * with equals.
+ *
+ * Not thread safe, each table is only filled by one load step at a time.
+ */
+public class SymbolTable {
+
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private final List<String> symbols = new ArrayList<String>();
+
+	/**Returns the id of the given String, adding it if it is new*/
+	public int intern(String s) {
+		Integer id = ids.get(s);
+		if (id == null) {
+			id = symbols.size();
+			ids.put(s, id);
+			symbols.add(s);
+		}
+		return id;
+	}
+
+	/**Returns the shared instance for an id*/
+	public String get(int id) {
+		return symbols.get(id);
+	}
+
+	/**Returns the id of the given String, or -1 if it isn't in the table*/
+	public int idOf(String s) {
+		Integer id = ids.get(s);
+		return id == null ? -1 : id;
+	}
+
+	public int size() {
+		return symbols.size();
+	}
+}
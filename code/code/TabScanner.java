@@ -0,0 +1,207 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the tab separated data files straight out of a memory-mapped buffer.
+ * Numbers are decoded from the raw bytes, so unlike BufferedReader.readLine()
+ * and String.split() no Strings or token arrays are created per line.
+ *
+ * Values with more significant digits than a double can hold exactly (e.g. the
+ * segment lengths) fall back to Double.parseDouble so the parsed values are
+ * always identical to the ones the BufferedReader parser produces.
+ */
+public class TabScanner {
+
+	private static final double[] POW10 = new double[23];
+	private static final long MAX_EXACT = 1L << 53;		//Largest mantissa a double holds exactly
+
+	static {
+		POW10[0] = 1;
+		for (int i = 1; i < POW10.length; i++)
+			POW10[i] = POW10[i - 1] * 10;
+	}
+
+	private final ByteBuffer buf;
+	private final int limit;
+	private int pos;
+
+	private byte[] scratch = new byte[32];					//Only used for the slow double path
+
+	public TabScanner(ByteBuffer buf) {
+		this.buf = buf;
+		this.pos = buf.position();
+		this.limit = buf.limit();
+	}
+
+	/**Maps the whole file read-only and returns a scanner positioned at its start
+	 *
+	 * @param File file - file to be mapped*/
+	public static TabScanner map(File file) throws IOException {
+		return new TabScanner(mapFile(file));
+	}
+
+	/**Maps the whole file read-only, the mapping stays valid after the channel is closed
+	 *
+	 * @param File file - file to be mapped*/
+	public static MappedByteBuffer mapFile(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/**Returns the current byte offset in the buffer*/
+	public int position() {
+		return pos;
+	}
+
+	/**Returns true if there is anything other than blank lines left to read*/
+	public boolean hasNext() {
+		skipBlankLines();
+		return pos < limit;
+	}
+
+	/**Skips the rest of the current line, including the line terminator*/
+	public void skipLine() {
+		while (pos < limit && buf.get(pos) != '\n')
+			pos++;
+		if (pos < limit)
+			pos++;
+	}
+
+	/**Returns true if only separators are left on the current line*/
+	public boolean atEndOfLine() {
+		skipSeparators();
+		return pos >= limit || buf.get(pos) == '\n';
+	}
+
+	/**If the next bytes on this line (after any separators) spell out the given
+	 * ASCII text, skips over them and returns true. Otherwise nothing is consumed.*/
+	public boolean accept(String text) {
+		skipSeparators();
+
+		int len = text.length();
+		if (pos + len > limit)
+			return false;
+		for (int i = 0; i < len; i++) {
+			if (buf.get(pos + i) != text.charAt(i))
+				return false;
+		}
+		pos += len;
+		return true;
+	}
+
+	public int nextInt() {
+		skipSeparators();
+
+		boolean negative = false;
+		if (pos < limit && buf.get(pos) == '-') {
+			negative = true;
+			pos++;
+		}
+
+		int value = 0;
+		int start = pos;
+		byte b;
+		while (pos < limit && (b = buf.get(pos)) >= '0' && b <= '9') {
+			value = value * 10 + (b - '0');
+			pos++;
+		}
+		if (pos == start)
+			throw new NumberFormatException("expected an integer at byte " + pos);
+
+		return negative ? -value : value;
+	}
+
+	public double nextDouble() {
+		skipSeparators();
+
+		int start = pos;
+		boolean negative = false;
+		byte b = pos < limit ? buf.get(pos) : 0;
+		if (b == '-' || b == '+') {
+			negative = b == '-';
+			pos++;
+		}
+
+		long mantissa = 0;
+		int fraction = 0, digits = 0;
+		boolean exact = true, point = false;
+
+		while (pos < limit) {
+			b = buf.get(pos);
+			if (b >= '0' && b <= '9') {
+				if (mantissa < MAX_EXACT / 10) {
+					mantissa = mantissa * 10 + (b - '0');
+					if (point)
+						fraction++;
+				} else
+					exact = false;						//Too many digits for the fast path
+				digits++;
+			} else if (b == '.' && !point)
+				point = true;
+			else if (b == 'e' || b == 'E') {
+				exact = false;
+				pos++;
+				while (pos < limit && ((b = buf.get(pos)) == '-' || b == '+' || (b >= '0' && b <= '9')))
+					pos++;
+				break;
+			} else
+				break;
+			pos++;
+		}
+		if (digits == 0)
+			throw new NumberFormatException("expected a number at byte " + start);
+
+		if (exact && fraction < POW10.length) {
+			double value = mantissa / POW10[fraction];		//Both exact, so the division is correctly rounded
+			return negative ? -value : value;
+		}
+		return Double.parseDouble(token(start, pos));
+	}
+
+	/**Reads the next token up to a tab or the end of the line. Only used for
+	 * the few text columns, so this is allowed to allocate.*/
+	public String nextString() {
+		skipSeparators();
+
+		int start = pos;
+		byte b;
+		while (pos < limit && (b = buf.get(pos)) != '\t' && b != '\n' && b != '\r')
+			pos++;
+
+		return token(start, pos);
+	}
+
+	private String token(int start, int end) {
+		int len = end - start;
+		if (scratch.length < len)
+			scratch = new byte[len];
+		for (int i = 0; i < len; i++)
+			scratch[i] = buf.get(start + i);
+		return new String(scratch, 0, len, StandardCharsets.ISO_8859_1);
+	}
+
+	private void skipSeparators() {
+		byte b;
+		while (pos < limit && ((b = buf.get(pos)) == '\t' || b == ' ' || b == '\r'))
+			pos++;
+	}
+
+	private void skipBlankLines() {
+		int p = pos;
+		byte b;
+		while (p < limit && ((b = buf.get(p)) == '\t' || b == ' ' || b == '\r' || b == '\n')) {
+			p++;
+			if (b == '\n')
+				pos = p;
+		}
+		if (p >= limit)
+			pos = limit;
+	}
+}
@@ -21,7 +21,7 @@ public class Trie {
 
 	private List<Road> selectRoads;
 
-    public Trie(Map<Integer, Road> roads) {
+    public Trie(IdTable<Road> roads) {
 
     	this.root = new TrieNode();
 
@@ -33,14 +33,21 @@ public class Trie {
 
     /**Initializes the Trie based on the RoadNames and CityNames in the Road Data Set
      *
-     * @param Map<Integer, Road> roads - A Map containing loaded data from the Road Data Set*/
-    public void initTrie(Map<Integer, Road> roads){
+     * @param IdTable<Road> roads - the Roads loaded from the Road Data Set*/
+    public void initTrie(IdTable<Road> roads){
 
-    	for(Road r : roads.values()){
-    		if( ! roadNames.contains(r.name+", "+r.city))
-    			roadNames.add(r.name +", "+r.city);		//Get List of Unique Road Names + City
+    	Map<Long, String> labels = new HashMap<Long, String>();		//(name id, city id) -> "name, city"
 
-    		prefixRoads.put(r.name+", "+r.city, r);				//Initialize Data Struct with RoadNames as indexes to Roads
+    	for(Road r : roads.values()){
+    		long key = ((long) r.nameID << 32) | r.cityID;
+    		String label = labels.get(key);
+    		if(label == null){
+    			label = r.name +", "+r.city;
+    			labels.put(key, label);
+    			roadNames.add(label);							//Get List of Unique Road Names + City
+    		}
+
+    		prefixRoads.put(label, r);							//Initialize Data Struct with RoadNames as indexes to Roads
     	}
 
     	for(String s : roadNames)
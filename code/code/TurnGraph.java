@@ -0,0 +1,160 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * The edge based (turn expanded) form of a RoutingGraph: the search states
+ * are its directed arcs, and there is a transition from arc a to arc b for
+ * every turn at the node between them that is allowed. A restriction forbids
+ * one turn, not the node, so a node-based search that settles each node once
+ * can miss a route that has to enter a node from a particular road; a search
+ * over arcs can't.
+ *
+ * A transition back along the same road costs UTURN_DELAY on top of arc b.
+ * Time searches add it, distance searches only use the arc lengths, both skip
+ * the forbidden turns since they aren't transitions at all. Traffic lights are
+ * already in the arc times (see AStarSearch.LIGHT_DELAY), the same as for the
+ * node based searches, so without U-turns both cost a route the same.
+ *
+ * Built from the base graph's TurnRestrictions, see Graph.getTurnGraph. The
+ * transitions are in CSR form by arc, about (arcs into a node) x (arcs out)
+ * per node.
+ *
+ * Usage: java TurnGraph <data directory> [queries] - compares it to the node based search
+ */
+public class TurnGraph {
+
+	/**Seconds added for turning back along the same road (-Dmapper.uturnDelay)*/
+	public static final int UTURN_DELAY = Integer.getInteger("mapper.uturnDelay", 30);
+
+	private final RoutingGraph base;
+	private final int[] offsets;				//arcCount + 1 entries, into turns
+	private final int[] turns;					//Transition -> arc turned into
+	private final double[] delays;				//Transition -> seconds the turn costs
+
+	private TurnGraph(RoutingGraph base, int[] offsets, int[] turns, double[] delays) {
+		this.base = base;
+		this.offsets = offsets;
+		this.turns = turns;
+		this.delays = delays;
+	}
+
+	/**Expands every allowed turn of the graph into a transition*/
+	public static TurnGraph build(RoutingGraph g) {
+
+		int arcs = g.arcCount();
+		int[] offsets = new int[arcs + 1];
+		for (int a = 0; a < arcs; a++) {
+			int node = g.target(a);
+			for (int b = g.begin(node), end = g.end(node); b < end; b++) {
+				if (!g.isTurnRestricted(a, b))
+					offsets[a + 1]++;
+			}
+		}
+		for (int a = 0; a < arcs; a++)
+			offsets[a + 1] += offsets[a];
+
+		int[] turns = new int[offsets[arcs]];
+		double[] delays = new double[offsets[arcs]];
+		int t = 0;
+		for (int a = 0; a < arcs; a++) {
+			int node = g.target(a);
+			for (int b = g.begin(node), end = g.end(node); b < end; b++) {
+				if (g.isTurnRestricted(a, b))
+					continue;
+				turns[t] = b;
+				if (g.target(b) == g.source(a) && g.roadID(b) == g.roadID(a))
+					delays[t] = UTURN_DELAY;		//Back the way it came
+				t++;
+			}
+		}
+		return new TurnGraph(g, offsets, turns, delays);
+	}
+
+	/**Returns the graph whose arcs are the states*/
+	public RoutingGraph base() {
+		return base;
+	}
+
+	public int stateCount() {
+		return base.arcCount();
+	}
+
+	public int transitionCount() {
+		return turns.length;
+	}
+
+	/**Returns the first transition out of the arc, they run up to (not including) end(arc)*/
+	public int begin(int arc) {
+		return offsets[arc];
+	}
+
+	public int end(int arc) {
+		return offsets[arc + 1];
+	}
+
+	/**Returns the arc a transition turns into*/
+	public int turn(int transition) {
+		return turns[transition];
+	}
+
+	/**Returns the seconds a transition costs on top of the time of the arc it turns into*/
+	public double delay(int transition) {
+		return delays[transition];
+	}
+
+	//===========================COMPARISON========================
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 1) {
+			System.out.println("Usage: java TurnGraph <data directory> [queries]");
+			return;
+		}
+		System.setProperty("java.awt.headless", "true");
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		Graph graph = MapEngine.load(new File(args[0])).getGraph();
+		CsrGraph csr = graph.getCsr();
+		long start = System.nanoTime();
+		TurnGraph tg = graph.getTurnGraph();
+		System.out.printf("Built %d states, %d transitions in %.1fms (node based: %d nodes, %d arcs)%n",
+				tg.stateCount(), tg.transitionCount(), (System.nanoTime() - start) / 1e6, csr.nodeCount, csr.arcCount);
+
+		Random random = new Random(1);
+		for (int mode = 0; mode < 2; mode++) {
+			boolean byTime = mode == 1;
+			long nodeTime = 0, turnTime = 0, nodeSettled = 0, turnSettled = 0;
+			int found = 0, shorter = 0;
+
+			for (int q = 0; q < queries; q++) {
+				int from = random.nextInt(csr.nodeCount), to = random.nextInt(csr.nodeCount);
+
+				long t0 = System.nanoTime();
+				SearchWorkspace ws = byTime ? AStarSearch.timeSearch(csr, from, to) : AStarSearch.distSearch(csr, from, to);
+				nodeSettled += ws.settledCount();
+				double nodeCost = ws.isSettled(to) ? ws.cost(to) : -1;
+				long t1 = System.nanoTime();
+				ws = AStarSearch.turnSearch(tg, from, to, byTime);
+				turnSettled += ws.settledCount();
+				int[] arcs = AStarSearch.turnPath(tg, ws, from, to);
+				long t2 = System.nanoTime();
+
+				nodeTime += t1 - t0;
+				turnTime += t2 - t1;
+				if (arcs != null) {
+					found++;
+					double length = 0;
+					for (int a : arcs)
+						length += csr.length(a);
+					if (!byTime && nodeCost >= 0 && length < nodeCost - 1e-9)
+						shorter++;							//Only a search over arcs found it
+				}
+			}
+			System.out.printf("%s: node based %.2fms %d settled, edge based %.2fms %d settled, %d found%s%n",
+					byTime ? "time" : "distance", nodeTime / 1e6 / queries, nodeSettled / queries,
+					turnTime / 1e6 / queries, turnSettled / queries, found,
+					byTime ? "" : ", " + shorter + " shorter than node based");
+		}
+	}
+}
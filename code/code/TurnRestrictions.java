@@ -0,0 +1,102 @@
+import java.util.Arrays;
+
+/**
+ * The restricted turns of a graph as a set of (incoming arc, outgoing arc)
+ * pairs, so a search checks a turn with one probe of a long array instead of
+ * comparing the node and road ids of every Restriction at the node.
+ *
+ * An open addressing table keyed by inArc << 32 | outArc. A Restriction
+ * names the two roads and the nodes either side of the turn, which can match
+ * more than one pair of arcs (parallel Segments of the same Road), so build
+ * adds them all, sizing the table from a first pass that counts them. The
+ * table is at most half full, and a probe gives up after visiting every slot
+ * so a lookup can't loop forever. OffHeapGraph stores the same table in its
+ * buffer and probes it with slot.
+ */
+public class TurnRestrictions {
+
+	static final long EMPTY = -1;
+
+	final long[] keys;
+	private final int mask;
+	private int size;
+
+	/**@param int expected - number of arc pairs that will be added*/
+	TurnRestrictions(int expected) {
+		this.keys = new long[Integer.highestOneBit(Math.max(8, expected * 2) - 1) << 1];
+		this.mask = keys.length - 1;
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**Adds the arc pairs of every Restriction at the Nodes of a CsrGraph*/
+	static TurnRestrictions build(CsrGraph csr, Node[] nodes) {
+		TurnRestrictions turns = new TurnRestrictions(pairs(csr, nodes, null));
+		pairs(csr, nodes, turns);
+		return turns;
+	}
+
+	/**Finds the arc pairs the Restrictions match, adding them to the table if there is one
+	 *
+	 * @return int - the number of pairs, counting any pair matched twice each time*/
+	private static int pairs(CsrGraph csr, Node[] nodes, TurnRestrictions turns) {
+		int count = 0;
+		for (int node = 0; node < nodes.length; node++) {
+			for (Restriction r : nodes[node].getRestrictions()) {
+				if (r.getN1() == null || r.getR1() == null || r.getR2() == null || r.getN2() == null)
+					continue;									//Can't match any turn
+
+				for (int p = csr.inBegin(node); p < csr.inEnd(node); p++) {
+					int in = csr.inArc(p);
+					if (csr.source(in) != r.getN1().index || csr.roadID(in) != r.getR1().roadID)
+						continue;
+					for (int out = csr.begin(node); out < csr.end(node); out++) {
+						if (csr.roadID(out) != r.getR2().roadID || csr.target(out) != r.getN2().index)
+							continue;
+						count++;
+						if (turns != null)
+							turns.add(in, out);
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	private void add(int inArc, int outArc) {
+		long key = key(inArc, outArc);
+		int i = slot(key, mask);
+		for (; keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key)
+				return;
+		}
+		keys[i] = key;
+		size++;
+	}
+
+	/**Returns true if turning from the first arc into the second is not allowed*/
+	public boolean contains(int inArc, int outArc) {
+		if (size == 0)
+			return false;
+		long key = key(inArc, outArc);
+		for (int i = slot(key, mask), probes = 0; keys[i] != EMPTY && probes < keys.length; i = (i + 1) & mask, probes++) {
+			if (keys[i] == key)
+				return true;
+		}
+		return false;
+	}
+
+	/**Returns the number of restricted arc pairs*/
+	public int size() {
+		return size;
+	}
+
+	static long key(int inArc, int outArc) {
+		return (long) inArc << 32 | outArc;
+	}
+
+	/**Returns the first slot to probe for a key in a table of mask + 1 slots*/
+	static int slot(long key, int mask) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+}